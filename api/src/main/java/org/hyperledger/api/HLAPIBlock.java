@@ -22,10 +22,12 @@ import org.hyperledger.block.HyperledgerHeader;
 import org.hyperledger.merkletree.MerkleRoot;
 import org.hyperledger.merkletree.MerkleTree;
 import org.hyperledger.merkletree.MerkleTreeNode;
+import org.hyperledger.transaction.Transaction;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.function.Predicate;
 
 public class HLAPIBlock extends Block {
 
@@ -89,6 +91,11 @@ public class HLAPIBlock extends Block {
         }
     }
 
+    @Override
+    public HLAPIBlock prune(Predicate<? super Transaction> keep) {
+        return new HLAPIBlock(getHeader(), pruneNodes(keep));
+    }
+
     public int getHeight() {
         return getHeader().getHeight();
     }
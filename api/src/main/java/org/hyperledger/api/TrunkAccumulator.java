@@ -0,0 +1,162 @@
+/**
+ * Copyright 2016 Digital Asset Holdings, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.api;
+
+import org.hyperledger.block.BID;
+import org.hyperledger.block.Header;
+import org.hyperledger.common.Hash;
+import org.hyperledger.common.HashAlgorithm;
+import org.hyperledger.merkletree.MerkleMountainRange;
+import org.hyperledger.merkletree.MerkleProof;
+import org.hyperledger.merkletree.MerkleRoot;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * A TrunkListener that accumulates the headers of trunk blocks into a Merkle Mountain Range. It proves that a block
+ * is at a given height of the trunk with O(log n) digests, instead of a walk along the header chain.
+ * <p>
+ * Blocks are accumulated by a digest of their header, see digest, as headers received from the ledger carry no ID.
+ * Heights count from the first block received, that is the height of the block if the accumulator was fed
+ * from the genesis block, e.g. through HLAPI.catchUp with an empty inventory. A block whose previous ID is the
+ * digest of a block already accumulated, other than the last, is a reorganisation: the blocks after its previous
+ * block are removed before it is added. Blocks that do not link to a recent trunk block this way, e.g. blocks
+ * observed from events, whose previous ID is not set, are appended.
+ * <p>
+ * Thread safe, so it can be registered with HLAPI.registerTrunkListener and queried by other threads.
+ *
+ * @see MerkleMountainRange
+ * @see HLAPI#registerTrunkListener(TrunkListener)
+ */
+public class TrunkAccumulator implements TrunkListener {
+    /**
+     * number of blocks searched back for the previous block of a reorganisation
+     */
+    public static final int MAX_REORG_DEPTH = 1000;
+
+    private final MerkleMountainRange trunk;
+    private final HashAlgorithm algorithm;
+
+    public TrunkAccumulator() {
+        this(HashAlgorithm.getDefault());
+    }
+
+    /**
+     * @param algorithm digest algorithm of the ledger
+     */
+    public TrunkAccumulator(HashAlgorithm algorithm) {
+        this.algorithm = algorithm;
+        trunk = new MerkleMountainRange(algorithm);
+    }
+
+    /**
+     * @param added blocks added to the trunk, in order
+     */
+    @Override
+    public synchronized void trunkUpdate(List<HLAPIBlock> added) {
+        for (HLAPIBlock block : added) {
+            int previous = indexOf(block.getPreviousID());
+            if (previous >= 0) {
+                trunk.truncate(previous + 1);
+            }
+            trunk.add(digest(block.getHeader(), algorithm));
+        }
+    }
+
+    /**
+     * Digest of the previous ID, the Merkle root and the create time of a header, the leaf a block is
+     * accumulated by. Missing fields count as zeros.
+     *
+     * @param header    a block header
+     * @param algorithm digest algorithm of the accumulator
+     * @return digest of the header
+     */
+    @SuppressWarnings("deprecation")
+    public static Hash digest(Header header, HashAlgorithm algorithm) {
+        byte[] content = new byte[2 * 32 + 4];
+        if (header.getPreviousID() != null) {
+            header.getPreviousID().copyTo(content, 0);
+        }
+        if (header.getMerkleRoot() != null) {
+            header.getMerkleRoot().copyTo(content, 32);
+        }
+        ByteBuffer.wrap(content).putInt(2 * 32, header.getCreateTime());
+        return Hash.of(content, algorithm);
+    }
+
+    private int indexOf(BID id) {
+        if (id == null) {
+            return -1;
+        }
+        int last = trunk.size() - 1;
+        for (int i = last; i >= 0 && i >= last - MAX_REORG_DEPTH; i--) {
+            if (trunk.isLeaf(i, id)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return number of blocks accumulated
+     */
+    public synchronized int size() {
+        return trunk.size();
+    }
+
+    /**
+     * @param height height of a block
+     * @return the digest of the block at height
+     * @throws IndexOutOfBoundsException if there is no block at height
+     */
+    public synchronized Hash getDigest(int height) {
+        return trunk.getLeaf(height);
+    }
+
+    /**
+     * @return Merkle root of the digests of all blocks accumulated
+     * @throws IllegalStateException if no block was accumulated
+     */
+    public synchronized MerkleRoot getRoot() {
+        return trunk.getRoot();
+    }
+
+    /**
+     * Create a proof that a block is on the trunk, to be verified against getRoot
+     *
+     * @param height height of the block
+     * @return proof of the block digest at height
+     * @throws IndexOutOfBoundsException if there is no block at height
+     */
+    public synchronized MerkleProof createProof(int height) {
+        return trunk.createProof(height);
+    }
+
+    /**
+     * Verify that a block is at a height of the trunk
+     *
+     * @param header header of the block
+     * @param height claimed height
+     * @param proof  proof of the block
+     * @param root   root of a trusted TrunkAccumulator
+     * @return true if the proof leads from the block at height to root
+     */
+    public static boolean verify(Header header, int height, MerkleProof proof, MerkleRoot root) {
+        return proof.getIndex() == height
+                && MerkleProof.verify(digest(header, proof.getAlgorithm()), proof, root);
+    }
+}
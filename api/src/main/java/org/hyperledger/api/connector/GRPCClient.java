@@ -41,6 +41,7 @@ import protos.OpenchainGrpc;
 import protos.OpenchainGrpc.OpenchainBlockingStub;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Base64;
 import java.util.Collections;
 import java.util.List;
@@ -66,19 +67,17 @@ public class GRPCClient implements HLAPI {
         observer.connect();
     }
 
-    private void invoke(String chaincodeName, byte[] transaction) {
+    private void invoke(String chaincodeName, ByteString transaction) {
         invoke(chaincodeName, "execute", transaction);
     }
 
-    private void invoke(String chaincodeName, String functionName, byte[] transaction) {
-        String encodedTransaction = Base64.getEncoder().encodeToString(transaction);
-
+    private void invoke(String chaincodeName, String functionName, ByteString encodedTransaction) {
         ChaincodeID.Builder chaincodeId = ChaincodeID.newBuilder();
         chaincodeId.setName(chaincodeName);
 
         ChaincodeInput.Builder chaincodeInput = ChaincodeInput.newBuilder();
         chaincodeInput.setFunction(functionName);
-        chaincodeInput.addArgs(encodedTransaction);
+        chaincodeInput.addArgsBytes(encodedTransaction);
 
         ChaincodeSpec.Builder chaincodeSpec = ChaincodeSpec.newBuilder();
         chaincodeSpec.setChaincodeID(chaincodeId);
@@ -180,7 +179,20 @@ public class GRPCClient implements HLAPI {
     public void sendTransaction(Transaction transaction) throws HLAPIException {
         byte[] t = transaction.toByteArray();
         log.debug("Sending transaction of size {}", t.length);
-        invoke(chaincodeName, t);
+        invoke(chaincodeName, encode(t));
+    }
+
+    // Base64 of the serialized transaction, the string argument of the chaincode, encoded straight into the
+    // buffer of the ByteString. A buffer of the exact length is taken over by the ByteString without a copy.
+    static ByteString encode(byte[] transaction) {
+        int length = 4 * ((transaction.length + 2) / 3);
+        ByteString.Output out = ByteString.newOutput(length);
+        try (OutputStream base64 = Base64.getEncoder().wrap(out)) {
+            base64.write(transaction);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return out.toByteString();
     }
 
     @Override
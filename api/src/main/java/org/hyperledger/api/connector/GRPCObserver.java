@@ -22,6 +22,7 @@ import io.grpc.stub.StreamObserver;
 import org.hyperledger.api.*;
 import org.hyperledger.block.Header;
 import org.hyperledger.block.HyperledgerHeader;
+import org.hyperledger.common.HashPool;
 import org.hyperledger.merkletree.MerkleRoot;
 import org.hyperledger.merkletree.MerkleTree;
 import org.hyperledger.transaction.TID;
@@ -54,6 +55,8 @@ public class GRPCObserver {
     private Set<TransactionListener> txListeners = new HashSet<>();
     private Set<TrunkListener> trunkListeners = new HashSet<>();
     private Set<RejectListener> rejectionListeners = new HashSet<>();
+    // the same IDs are decoded again as inputs of later transactions and in rejections
+    private final HashPool<TID> tidPool = new HashPool<>();
 
     public GRPCObserver(Channel eventsChannel) {
         es = EventsGrpc.newStub(eventsChannel);
@@ -113,9 +116,7 @@ public class GRPCObserver {
     }
 
     private HLAPIBlock createBlock(List<Fabric.Transaction> txs) {
-        List<Transaction> txList = txs.stream()
-                .map(GRPCObserver::toHLTransaction)
-                .collect(toList());
+        List<Transaction> txList = toHLTransactions(txs);
 
         MerkleRoot merkleRoot = MerkleTree.computeMerkleRoot(txList);
 
@@ -133,13 +134,34 @@ public class GRPCObserver {
                 .build();
     }
 
-    private static Transaction toHLTransaction(Fabric.Transaction tx) {
+    // transactions of a block are wrapped without a copy, their content is only decoded if a listener reads it
+    private List<Transaction> toHLTransactions(List<Fabric.Transaction> txs) {
+        List<byte[]> transactionBytes = txs.stream()
+                .map(GRPCObserver::toTransactionBytes)
+                .collect(toList());
+        try {
+            return Transaction.wrapByteArrays(transactionBytes, tidPool);
+        } catch (IOException e) {
+            log.error("Error when processing transactions of block, {}", e.getMessage());
+            throw new RuntimeException(e);
+        }
+    }
+
+    private Transaction toHLTransaction(Fabric.Transaction tx) {
+        try {
+            return Transaction.fromByteArray(toTransactionBytes(tx), tidPool);
+        } catch (IOException e) {
+            log.error("Error when processing transaction {}, {}", tx.getPayload(), e.getMessage());
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static byte[] toTransactionBytes(Fabric.Transaction tx) {
         ByteString invocationSpecBytes = tx.getPayload();
         try {
             ChaincodeInvocationSpec invocationSpec = ChaincodeInvocationSpec.parseFrom(invocationSpecBytes);
             String transactionString = invocationSpec.getChaincodeSpec().getCtorMsg().getArgs(0);
-            byte[] transactionBytes = DatatypeConverter.parseBase64Binary(transactionString);
-            return Transaction.fromByteArray(transactionBytes);
+            return DatatypeConverter.parseBase64Binary(transactionString);
         } catch (IOException e) {
             log.error("Error when processing transaction {}, {}", invocationSpecBytes, e.getMessage());
             throw new RuntimeException(e);
@@ -28,7 +28,7 @@ public class BID extends Hash {
     public static final BID INVALID = new BID(new byte[32]);
 
     public BID(Hash hash) {
-        super(hash.unsafeGetArray());
+        super(hash);
     }
 
     public BID(byte[] hash) {
@@ -16,15 +16,21 @@
 package org.hyperledger.block;
 
 import org.hyperledger.common.*;
+import org.hyperledger.merkletree.MerkleMultiProof;
+import org.hyperledger.merkletree.MerkleProof;
 import org.hyperledger.merkletree.MerkleRoot;
 import org.hyperledger.merkletree.MerkleTree;
 import org.hyperledger.merkletree.MerkleTreeNode;
+import org.hyperledger.merkletree.PrunedNode;
+import org.hyperledger.transaction.TID;
 import org.hyperledger.transaction.Transaction;
 
 import java.time.LocalTime;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.function.Predicate;
 
 /**
  * A block of the ledger.
@@ -39,6 +45,12 @@ import java.util.List;
  * @see MerkleTreeNode
  */
 public class Block {
+    // estimates of retained sizes: a digest is an object header and four longs, a pruned node adds its own
+    private static final int HASH_SIZE = 48;
+    private static final int PRUNED_NODE_SIZE = 24 + HASH_SIZE;
+    // block, header, ID, previous ID and merkle root
+    private static final int HEADER_SIZE = 24 + 24 + 3 * HASH_SIZE;
+
     private final Header header;
     private List<? extends MerkleTreeNode> nodes;
     private List<Transaction> transactions;
@@ -78,6 +90,68 @@ public class Block {
         return transactions != nodes;
     }
 
+    /**
+     * Create a copy of this block that keeps only some transactions. Dropped transactions are replaced with
+     * the fewest PrunedNodes that still verify the merkle root of the header.
+     *
+     * @param keep - selects the transactions to keep
+     * @return the pruned block
+     * @see #hasValidMerkleRoot()
+     */
+    public Block prune(Predicate<? super Transaction> keep) {
+        return new Block(header, pruneNodes(keep));
+    }
+
+    protected List<MerkleTreeNode> pruneNodes(Predicate<? super Transaction> keep) {
+        List<MerkleTreeNode> pruned = new ArrayList<>(nodes.size());
+        for (MerkleTreeNode n : nodes) {
+            if (n instanceof Transaction && !keep.test((Transaction) n)) {
+                pruned.add(new PrunedNode(n.getID(), 0));
+            } else {
+                pruned.add(n);
+            }
+        }
+        return MerkleTree.compact(pruned);
+    }
+
+    /**
+     * Recompute the merkle root from the transactions and pruned nodes of this block.
+     *
+     * @return true if it is the merkle root of the header
+     */
+    public boolean hasValidMerkleRoot() {
+        return !nodes.isEmpty() && header.getMerkleRoot().equals(MerkleTree.computePrunedMerkleRoot(nodes));
+    }
+
+    /**
+     * Estimate of the heap retained by this block, its header, transactions and pruned nodes, assuming a
+     * 64 bit JVM with compressed references. Objects shared with others, e.g. interned IDs, are counted too.
+     *
+     * @return estimated size in bytes
+     */
+    public long getRetainedSize() {
+        long size = HEADER_SIZE + listSize(nodes.size());
+        if (isPruned()) {
+            size += listSize(transactions.size());
+        }
+        for (MerkleTreeNode n : nodes) {
+            if (n instanceof Transaction) {
+                size += ((Transaction) n).getRetainedSize();
+            } else {
+                size += PRUNED_NODE_SIZE;
+            }
+        }
+        return size;
+    }
+
+    private static long listSize(int n) {
+        return 24 + align(16 + 4L * n);
+    }
+
+    private static long align(long size) {
+        return (size + 7) & ~7;
+    }
+
     /**
      * create a Block builder.
      *
@@ -203,6 +277,41 @@ public class Block {
         return nodes;
     }
 
+    /**
+     * Create a proof that a transaction is included in this block. It can be verified against the block header's
+     * merkle root without the other transactions.
+     *
+     * @param id - ID of a transaction of this block
+     * @return proof of inclusion
+     * @throws IllegalArgumentException if the transaction is not in the block
+     * @throws IllegalStateException if the block is pruned, use getMerkleMultiProof instead
+     * @see MerkleProof#verify
+     */
+    public MerkleProof getMerkleProof(TID id) {
+        if (isPruned()) {
+            throw new IllegalStateException("Block " + getID() + " is pruned, its leaf positions are not known");
+        }
+        for (int i = 0; i < nodes.size(); i++) {
+            if (nodes.get(i).getID().equals(id)) {
+                return MerkleProof.create(nodes, i);
+            }
+        }
+        throw new IllegalArgumentException("Transaction " + id + " is not in block " + getID());
+    }
+
+    /**
+     * Create a proof that some transactions are included in this block, siblings shared by their paths are
+     * stored once. Works on pruned blocks too, as long as the transactions are kept.
+     *
+     * @param ids - IDs of transactions of this block
+     * @return proof of inclusion of all of them
+     * @throws IllegalArgumentException if a transaction is not in the block
+     * @see MerkleMultiProof#verify
+     */
+    public MerkleMultiProof getMerkleMultiProof(Collection<TID> ids) {
+        return MerkleMultiProof.create(nodes, ids);
+    }
+
 
     @Override
     public boolean equals(Object o) {
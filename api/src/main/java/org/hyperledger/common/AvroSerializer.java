@@ -22,30 +22,177 @@ import org.apache.avro.specific.SpecificDatumReader;
 import org.apache.avro.specific.SpecificDatumWriter;
 import org.apache.avro.specific.SpecificRecord;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.function.Function;
 
 import static java.util.stream.Collectors.toList;
 
+/**
+ * Avro binary encoding of records. Datum writers and readers are cached per schema, encoders, decoders and the
+ * output buffer are reused, all per thread, so a call only pays for the encoding itself.
+ */
 public class AvroSerializer {
+    // buffers grown beyond this are not kept for reuse
+    private static final int MAX_RETAINED_BUFFER = 1 << 20;
+
+    private static final ThreadLocal<Context> context = ThreadLocal.withInitial(Context::new);
+
+    private static final class Context {
+        private final Map<Schema, DatumWriter<?>> writers = new HashMap<>();
+        private final Map<Schema, DatumReader<?>> readers = new HashMap<>();
+        private Buffer buffer = new Buffer();
+        private BinaryEncoder encoder;
+        private BinaryDecoder decoder;
+
+        @SuppressWarnings("unchecked")
+        <T extends SpecificRecord> DatumWriter<T> writer(Schema schema) {
+            return (DatumWriter<T>) writers.computeIfAbsent(schema, SpecificDatumWriter::new);
+        }
+
+        @SuppressWarnings("unchecked")
+        <T extends SpecificRecord> DatumReader<T> reader(Schema schema) {
+            return (DatumReader<T>) readers.computeIfAbsent(schema, SpecificDatumReader::new);
+        }
+
+        <T extends SpecificRecord> void write(T data, OutputStream out) throws IOException {
+            encoder = EncoderFactory.get().binaryEncoder(out, encoder);
+            this.<T>writer(data.getSchema()).write(data, encoder);
+            encoder.flush();
+        }
+
+        // encode into the reused buffer, valid until the next call on this thread
+        <T extends SpecificRecord> Buffer encode(T data) throws IOException {
+            if (buffer.capacity() > MAX_RETAINED_BUFFER) {
+                buffer = new Buffer();
+            }
+            buffer.reset();
+            write(data, buffer);
+            return buffer;
+        }
+
+        <T extends SpecificRecord> T read(BinaryDecoder decoder, Schema schema, boolean fully) throws IOException {
+            this.decoder = decoder;
+            T result = this.<T>reader(schema).read(null, decoder);
+            if (fully && !decoder.isEnd()) {
+                throw new IOException("Trailing bytes after " + schema.getName());
+            }
+            return result;
+        }
+    }
+
+    // ByteArrayOutputStream without synchronization and with access to its content
+    private static final class Buffer extends OutputStream {
+        private byte[] bytes = new byte[256];
+        private int count;
+
+        @Override
+        public void write(int b) {
+            ensureCapacity(1);
+            bytes[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            ensureCapacity(len);
+            System.arraycopy(b, off, bytes, count, len);
+            count += len;
+        }
+
+        private void ensureCapacity(int len) {
+            if (count + len > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(2 * bytes.length, count + len));
+            }
+        }
+
+        int capacity() {
+            return bytes.length;
+        }
+
+        void reset() {
+            count = 0;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(bytes, count);
+        }
+    }
 
     public static <T extends SpecificRecord> byte[] serialize(T data) throws IOException {
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        BinaryEncoder encoder = EncoderFactory.get().binaryEncoder(out, null);
-        DatumWriter<T> writer = new SpecificDatumWriter<>(data.getSchema());
-        writer.write(data, encoder);
-        encoder.flush();
-        out.close();
-        return out.toByteArray();
+        return context.get().encode(data).toByteArray();
+    }
+
+    /**
+     * Serialize a record into a stream
+     *
+     * @param data record
+     * @param out  stream to write to, not closed
+     * @throws IOException if writing to out fails
+     */
+    public static <T extends SpecificRecord> void serialize(T data, OutputStream out) throws IOException {
+        context.get().write(data, out);
+    }
+
+    /**
+     * Serialize a record into a buffer at its position, the position is advanced
+     *
+     * @param data record
+     * @param out  buffer to write to
+     * @return number of bytes written
+     * @throws IOException                      if the record can not be serialized
+     * @throws java.nio.BufferOverflowException if the record does not fit into out, nothing is written then
+     */
+    public static <T extends SpecificRecord> int serialize(T data, ByteBuffer out) throws IOException {
+        Buffer buffer = context.get().encode(data);
+        out.put(buffer.bytes, 0, buffer.count);
+        return buffer.count;
     }
 
     public static <T extends SpecificRecord> T deserialize(byte[] data, Schema schema) throws IOException {
-        SpecificDatumReader<T> reader = new SpecificDatumReader<>(schema);
-        Decoder decoder = DecoderFactory.get().binaryDecoder(data, null);
-        return reader.read(null, decoder);
+        Context c = context.get();
+        return c.read(DecoderFactory.get().binaryDecoder(data, c.decoder), schema, false);
+    }
+
+    /**
+     * Deserialize a record from the remaining bytes of a buffer, that must span all of them. The position of
+     * the buffer is not changed.
+     *
+     * @param data   serialized record
+     * @param schema schema of the record
+     * @return the record
+     * @throws IOException if data is not a valid record or has trailing bytes
+     */
+    public static <T extends SpecificRecord> T deserialize(ByteBuffer data, Schema schema) throws IOException {
+        Context c = context.get();
+        BinaryDecoder decoder;
+        if (data.hasArray()) {
+            decoder = DecoderFactory.get().binaryDecoder(data.array(), data.arrayOffset() + data.position(),
+                    data.remaining(), c.decoder);
+        } else {
+            byte[] copy = new byte[data.remaining()];
+            data.duplicate().get(copy);
+            decoder = DecoderFactory.get().binaryDecoder(copy, c.decoder);
+        }
+        return c.read(decoder, schema, true);
+    }
+
+    /**
+     * Deserialize a record from a stream. The decoder reads ahead, so the stream should hold only this record.
+     *
+     * @param in     stream of the serialized record
+     * @param schema schema of the record
+     * @return the record
+     * @throws IOException if reading fails or the stream does not hold a valid record
+     */
+    public static <T extends SpecificRecord> T deserialize(InputStream in, Schema schema) throws IOException {
+        Context c = context.get();
+        return c.read(DecoderFactory.get().binaryDecoder(in, c.decoder), schema, false);
     }
 
     public static <T> List<ByteBuffer> toByteBufferList(List<T> list, Function<T, byte[]> encoder) {
@@ -56,7 +203,23 @@ public class AvroSerializer {
 
     public static <T> List<T> fromByteBufferList(List<ByteBuffer> list, Function<byte[], T> decoder) {
         return list.stream()
-                .map(item -> decoder.apply(item.array()))
+                .map(item -> decoder.apply(toArray(item)))
                 .collect(toList());
     }
+
+    /**
+     * Content of a buffer between position and limit, the position is not changed. The backing array is returned
+     * if it holds exactly that content, as for buffers decoded by Avro, otherwise a copy.
+     *
+     * @param item a heap or direct buffer, possibly a slice
+     * @return the content
+     */
+    public static byte[] toArray(ByteBuffer item) {
+        if (item.hasArray() && item.arrayOffset() == 0 && item.position() == 0 && item.remaining() == item.array().length) {
+            return item.array();
+        }
+        byte[] copy = new byte[item.remaining()];
+        item.duplicate().get(copy);
+        return copy;
+    }
 }
@@ -31,7 +31,9 @@ import org.bouncycastle.crypto.params.ECPrivateKeyParameters;
 import org.bouncycastle.crypto.params.ECPublicKeyParameters;
 import org.bouncycastle.crypto.signers.ECDSASigner;
 import org.bouncycastle.crypto.signers.HMacDSAKCalculator;
+import org.bouncycastle.math.ec.ECMultiplier;
 import org.bouncycastle.math.ec.ECPoint;
+import org.bouncycastle.math.ec.FixedPointCombMultiplier;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
@@ -44,6 +46,11 @@ public class BouncyCastleCrypto implements Cryptography {
     static final ECDomainParameters domain = new ECDomainParameters(curve.getCurve(), curve.getG(), curve.getN(), curve.getH());
     static final SecureRandom secureRandom = new SecureRandom();
     static final BigInteger HALF_CURVE_ORDER = curve.getN().shiftRight(1);
+    // multiples of G from a table of precomputed points, the table is cached with G
+    static final ECMultiplier baseMultiplier = new FixedPointCombMultiplier();
+    // RFC 6979 deterministic k, the signer is initialized with the key of every signature
+    private static final ThreadLocal<ECDSASigner> signer =
+            ThreadLocal.withInitial(() -> new ECDSASigner(new HMacDSAKCalculator(new SHA256Digest())));
 
     @Override
     public byte[] createNewPrivateKey() {
@@ -57,7 +64,7 @@ public class BouncyCastleCrypto implements Cryptography {
 
     @Override
     public byte[] getPublicFor(byte[] privateKey) {
-        return curve.getG().multiply(new BigInteger(privateKey)).getEncoded(true);
+        return baseMultiplier.multiply(domain.getG(), new BigInteger(privateKey)).getEncoded(true);
     }
 
     @Override
@@ -91,8 +98,21 @@ public class BouncyCastleCrypto implements Cryptography {
 
     @Override
     public byte[] sign(byte[] hash, byte[] privateKey) {
-        ECDSASigner signer = new ECDSASigner(new HMacDSAKCalculator(new SHA256Digest()));
-        signer.init(true, new ECPrivateKeyParameters(new BigInteger(privateKey), domain));
+        return sign(hash, new ECPrivateKeyParameters(new BigInteger(privateKey), domain));
+    }
+
+    /**
+     * The key is parsed once, signatures are created with the signer of the calling thread
+     */
+    @Override
+    public SigningKey signingKey(byte[] privateKey) {
+        ECPrivateKeyParameters key = new ECPrivateKeyParameters(new BigInteger(privateKey), domain);
+        return hash -> sign(hash, key);
+    }
+
+    private byte[] sign(byte[] hash, ECPrivateKeyParameters key) {
+        ECDSASigner signer = BouncyCastleCrypto.signer.get();
+        signer.init(true, key);
         BigInteger[] signature = signer.generateSignature(hash);
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
         try {
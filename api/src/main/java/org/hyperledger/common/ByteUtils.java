@@ -15,28 +15,10 @@
  */
 package org.hyperledger.common;
 
-import org.apache.commons.codec.DecoderException;
-import org.apache.commons.codec.binary.Hex;
-
-import java.io.UnsupportedEncodingException;
-import java.math.BigInteger;
-
 /**
  * generic byte array utilities
  */
 public class ByteUtils {
-    private static final char[] b58 = "123456789ABCDEFGHJKLMNPQRSTUVWXYZabcdefghijkmnopqrstuvwxyz".toCharArray();
-    private static final int[] r58 = new int[256];
-
-    static {
-        for (int i = 0; i < 256; ++i) {
-            r58[i] = -1;
-        }
-        for (int i = 0; i < b58.length; ++i) {
-            r58[b58[i]] = i;
-        }
-    }
-
     /**
      * convert a byte array to a human readable base58 string. Base58 is a Bitcoin specific encoding similar to widely used base64 but avoids using characters
      * of similar shape, such as 1 and l or O an 0
@@ -45,28 +27,17 @@ public class ByteUtils {
      * @return
      */
     public static String toBase58(byte[] b) {
-        if (b.length == 0) {
-            return "";
-        }
-
-        int lz = 0;
-        while (lz < b.length && b[lz] == 0) {
-            ++lz;
-        }
+        return TextCodec.toBase58(b);
+    }
 
-        StringBuilder s = new StringBuilder();
-        BigInteger n = new BigInteger(1, b);
-        while (n.compareTo(BigInteger.ZERO) > 0) {
-            BigInteger[] r = n.divideAndRemainder(BigInteger.valueOf(58));
-            n = r[0];
-            char digit = b58[r[1].intValue()];
-            s.append(digit);
-        }
-        while (lz > 0) {
-            --lz;
-            s.append("1");
-        }
-        return s.reverse().toString();
+    /**
+     * recreate a byte array from base58
+     *
+     * @param s base58 text
+     * @return decoded bytes or null if s is not base58
+     */
+    public static byte[] fromBase58(String s) {
+        return TextCodec.fromBase58(s);
     }
 
     /**
@@ -99,6 +70,38 @@ public class ByteUtils {
         return data;
     }
 
+    /**
+     * read eight bytes in big endian order
+     *
+     * @param data   source array
+     * @param offset first byte to read
+     * @return the long value
+     */
+    public static long readLong(byte[] data, int offset) {
+        return (data[offset] & 0xffL) << 56 | (data[offset + 1] & 0xffL) << 48 |
+                (data[offset + 2] & 0xffL) << 40 | (data[offset + 3] & 0xffL) << 32 |
+                (data[offset + 4] & 0xffL) << 24 | (data[offset + 5] & 0xffL) << 16 |
+                (data[offset + 6] & 0xffL) << 8 | (data[offset + 7] & 0xffL);
+    }
+
+    /**
+     * write a long as eight bytes in big endian order
+     *
+     * @param value  the long value
+     * @param data   target array
+     * @param offset first byte to write
+     */
+    public static void writeLong(long value, byte[] data, int offset) {
+        data[offset] = (byte) (value >>> 56);
+        data[offset + 1] = (byte) (value >>> 48);
+        data[offset + 2] = (byte) (value >>> 40);
+        data[offset + 3] = (byte) (value >>> 32);
+        data[offset + 4] = (byte) (value >>> 24);
+        data[offset + 5] = (byte) (value >>> 16);
+        data[offset + 6] = (byte) (value >>> 8);
+        data[offset + 7] = (byte) value;
+    }
+
     /**
      * convert a byte array to hexadecimal
      *
@@ -106,7 +109,7 @@ public class ByteUtils {
      * @return
      */
     public static String toHex(byte[] data) {
-        return new String(Hex.encodeHex(data));
+        return TextCodec.toHex(data);
     }
 
     /**
@@ -116,10 +119,6 @@ public class ByteUtils {
      * @return
      */
     public static byte[] fromHex(String hex) {
-        try {
-            return Hex.decodeHex(hex.toCharArray());
-        } catch (DecoderException e) {
-            return null;
-        }
+        return TextCodec.fromHex(hex);
     }
 }
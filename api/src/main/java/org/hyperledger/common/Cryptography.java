@@ -30,6 +30,17 @@ public interface Cryptography {
 
     byte[] sign(byte[] hash, byte[] privateKey);
 
+    /**
+     * Prepare a private key for signing many digests, the default keeps a copy of the key for sign
+     *
+     * @param privateKey the key, not retained
+     * @return handle signing with the key
+     */
+    default SigningKey signingKey(byte[] privateKey) {
+        byte[] key = privateKey.clone();
+        return hash -> sign(hash, key);
+    }
+
     boolean verify(byte[] hash, byte[] signature, byte[] publicKey);
 
 }
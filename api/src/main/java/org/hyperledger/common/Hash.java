@@ -20,15 +20,11 @@ import org.hyperledger.block.HyperledgerHeader;
 import org.hyperledger.transaction.TID;
 
 import java.math.BigInteger;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
-import java.util.Arrays;
-
-import org.apache.commons.codec.binary.Hex;
+import java.nio.ByteBuffer;
 
 /**
  * A Hash identifies objects, that is blocks and transactions, in the ledger.
- * Technically it is a double SHA256 digest of the object's content.
+ * Technically it is a digest of the object's content, computed with the ledger's HashAlgorithm.
  *
  * @see TID
  * @see BID
@@ -36,7 +32,11 @@ import org.apache.commons.codec.binary.Hex;
 public class Hash {
     public static final Hash INVALID = Hash.createFromSafeArray(new byte[32]);
 
-    private final byte[] bytes;
+    // the digest in big endian order, h0 holds bytes 0-7, h3 holds bytes 24-31
+    private final long h0;
+    private final long h1;
+    private final long h2;
+    private final long h3;
 
     /**
      * create a Hash from a digest
@@ -44,11 +44,7 @@ public class Hash {
      * @param hash - digest must be 32 bytes long
      */
     public Hash(byte[] hash) {
-        if (hash.length != 32) {
-            throw new IllegalArgumentException("Digest length must be 32 bytes for Hash");
-        }
-        this.bytes = new byte[32];
-        System.arraycopy(hash, 0, this.bytes, 0, 32);
+        this(checkLength(hash), 0);
     }
 
     /**
@@ -58,16 +54,12 @@ public class Hash {
      * @param hex - a digest as a 64 character hexadecimal sequence in reverse byte order.
      */
     public Hash(String hex) {
-        if (hex.length() != 64) {
-            throw new IllegalArgumentException("Digest length must be 64 hex characters for Hash");
-        }
-
-        this.bytes = ByteUtils.reverse(ByteUtils.fromHex(hex));
+        this(fromReversedHex(hex), 0);
     }
 
     /**
-     * An unsafe constructor of a Hash from a byte array. Unsafe as it does not copy the
-     * array but keeps reference to it. It is only used in TID and BID
+     * An unsafe constructor of a Hash from a byte array. It is only used in TID and BID.
+     * The digest is read into the Hash so the array is not retained.
      *
      * @param hash - a 32 byte digest
      * @param safe - a dummy paramater to distinguish this unsafe constructor from the safe one.
@@ -75,55 +67,129 @@ public class Hash {
      * @see BID
      */
     protected Hash(byte[] hash, boolean safe) {
-        bytes = hash;
+        this(hash, 0);
+    }
+
+    /**
+     * Create a Hash with the same digest as an other one. Used by TID, BID and MerkleRoot to re-type a Hash.
+     *
+     * @param hash - a Hash
+     */
+    protected Hash(Hash hash) {
+        h0 = hash.h0;
+        h1 = hash.h1;
+        h2 = hash.h2;
+        h3 = hash.h3;
+    }
+
+    /**
+     * Create a Hash of a digest at an offset of an array, without checking bounds. Used by TID to read digests
+     * directly from serialized transactions.
+     *
+     * @param hash   - array holding the digest
+     * @param offset - first byte of the digest
+     */
+    protected Hash(byte[] hash, int offset) {
+        h0 = ByteUtils.readLong(hash, offset);
+        h1 = ByteUtils.readLong(hash, offset + 8);
+        h2 = ByteUtils.readLong(hash, offset + 16);
+        h3 = ByteUtils.readLong(hash, offset + 24);
+    }
+
+    private static byte[] checkLength(byte[] hash) {
+        if (hash.length != 32) {
+            throw new IllegalArgumentException("Digest length must be 32 bytes for Hash");
+        }
+        return hash;
+    }
+
+    private static byte[] fromReversedHex(String hex) {
+        if (hex.length() != 64) {
+            throw new IllegalArgumentException("Digest length must be 64 hex characters for Hash");
+        }
+        byte[] buffer = HashEngine.scratch();
+        if (!TextCodec.decodeHex(hex, buffer, 0, true)) {
+            throw new IllegalArgumentException("Digest must be hexadecimal for Hash");
+        }
+        return buffer;
     }
 
     /**
-     * Unsafe get of the internal byte array. Use this with extreme care and only if you are sure
-     * that the content will not be modified as that would lead to hard to locate bugs by shared mutable data.
-     * The only reason this method exists is that the code uses lots of Hashes avoiding unnecesary copy
-     * of their content significantly reduces memory footprint and increases performance. There is a risk
-     * tradoff however.
+     * Access to the digest as a byte array. The Hash stores its digest in four longs, so this creates a new
+     * array on every call. It is kept for compatibility with code written against the former array backed
+     * representation, prefer copyTo for bulk processing.
      *
-     * @return internal representation of Hash. DO NOT ALTER
+     * @return the digest of the Hash. DO NOT ALTER
+     * @see #copyTo(byte[], int)
      */
     public byte[] unsafeGetArray() {
-        return bytes;
+        return toByteArray();
     }
 
     /**
-     * Unsafe constructor of a Hash. Use this with extreme care and only if you are sure
-     * that the byte array in parameter will not be modified elswhere after calling this as that would lead to hard
-     * to locate bugs by shared mutable data.
-     * The only reason this method exists is that the code uses lots of Hashes avoiding unnecessary copy
-     * of their content significantly reduces memory footprint and increases performance. There is a risk
-     * tradeoff however.
+     * Create a Hash of a digest. The digest is read into four longs, so the array is not retained and
+     * may be reused by the caller after this returns.
      *
-     * @param hash a digest. DO NOT ALTER the array after creating a Hash with it.
-     * @return a new Hash that shares internal representation with the parameter byte array.
+     * @param hash a digest of 32 bytes
+     * @return a new Hash with the digest
      */
     public static Hash createFromSafeArray(byte[] hash) {
-        if (hash.length != 32) {
+        return new Hash(checkLength(hash), 0);
+    }
+
+    /**
+     * Create a Hash of a digest stored at an offset of a larger array, e.g. a packed list of digests.
+     *
+     * @param digests array holding the digest
+     * @param offset  first byte of the digest
+     * @return a new Hash with the digest
+     */
+    public static Hash createFromArray(byte[] digests, int offset) {
+        if (offset < 0 || offset + 32 > digests.length) {
             throw new IllegalArgumentException("Digest length must be 32 bytes for Hash");
         }
-        return new Hash(hash, true);
+        return new Hash(digests, offset);
     }
 
     /**
-     * Merge two Hashes into one for Merkle Tree calculation
+     * Write the digest into a buffer without allocation
+     *
+     * @param out    digest is written here
+     * @param offset first byte of the digest in out
+     */
+    public void copyTo(byte[] out, int offset) {
+        ByteUtils.writeLong(h0, out, offset);
+        ByteUtils.writeLong(h1, out, offset + 8);
+        ByteUtils.writeLong(h2, out, offset + 16);
+        ByteUtils.writeLong(h3, out, offset + 24);
+    }
+
+    /**
+     * Merge two Hashes into one for Merkle Tree calculation with the default algorithm
      *
      * @param a - a Hash
      * @param b - another Hash
-     * @return SHA256(SHA256(a||b))
+     * @return H(H(a||b)), that is SHA256(SHA256(a||b)) unless configured otherwise
+     * @see HashAlgorithm#getDefault()
      */
     public static Hash merge(Hash a, Hash b) {
-        try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            digest.update(a.bytes);
-            return Hash.createFromSafeArray(digest.digest(digest.digest(b.bytes)));
-        } catch (NoSuchAlgorithmException e) {
-            throw new RuntimeException(e);
-        }
+        return merge(a, b, HashAlgorithm.getDefault());
+    }
+
+    /**
+     * Merge two Hashes into one for Merkle Tree calculation
+     *
+     * @param a         - a Hash
+     * @param b         - another Hash
+     * @param algorithm - the digest algorithm
+     * @return H(H(a||b))
+     */
+    public static Hash merge(Hash a, Hash b, HashAlgorithm algorithm) {
+        byte[] buffer = HashEngine.scratch();
+        a.copyTo(buffer, 0);
+        b.copyTo(buffer, 32);
+        HashEngine.merge(algorithm, buffer, 0, buffer, 32, buffer, 0);
+        return new Hash(buffer, 0);
     }
 
     /**
@@ -135,13 +201,9 @@ public class Hash {
      * @return SHA256(data)
      */
     public static byte[] hash(byte[] data, int offset, int len) {
-        try {
-            MessageDigest a = MessageDigest.getInstance("SHA-256");
-            a.update(data, offset, len);
-            return a.digest();
-        } catch (NoSuchAlgorithmException e) {
-            throw new RuntimeException(e);
-        }
+        byte[] result = new byte[32];
+        HashEngine.sha256(data, offset, len, result, 0);
+        return result;
     }
 
     /**
@@ -155,13 +217,40 @@ public class Hash {
     }
 
     /**
-     * Create a Hash with double SHA256 hash of arbitrary data
+     * Create a Hash with the digest of arbitrary data with the default algorithm
      *
      * @param data arbitrary data
-     * @return a Hash initialized with SHA256(SHA256(data))
+     * @return a Hash initialized with H(data), that is SHA256(data) unless configured otherwise
+     * @see HashAlgorithm#getDefault()
      */
     public static Hash of(byte[] data) {
-        return new Hash(hash(data, 0, data.length));
+        return of(data, HashAlgorithm.getDefault());
+    }
+
+    /**
+     * Create a Hash with the digest of arbitrary data
+     *
+     * @param data      arbitrary data
+     * @param algorithm the digest algorithm
+     * @return a Hash initialized with H(data)
+     */
+    public static Hash of(byte[] data, HashAlgorithm algorithm) {
+        byte[] buffer = HashEngine.scratch();
+        HashEngine.hash(algorithm, data, 0, data.length, buffer, 0);
+        return new Hash(buffer, 0);
+    }
+
+    /**
+     * Create a Hash of the remaining content of a heap or direct buffer with the default algorithm
+     *
+     * @param data arbitrary data between position and limit, the position is not altered
+     * @return a Hash initialized with H(data), that is SHA256(data) unless configured otherwise
+     * @see HashAlgorithm#getDefault()
+     */
+    public static Hash of(ByteBuffer data) {
+        byte[] buffer = HashEngine.scratch();
+        HashEngine.hash(HashAlgorithm.getDefault(), data, buffer, 0);
+        return new Hash(buffer, 0);
     }
 
     /**
@@ -170,10 +259,51 @@ public class Hash {
      * @return String
      */
     public String toUuidString() {
-            String result = String.join("-", contentAsHex(0, 4), contentAsHex(4, 6),
-                                             contentAsHex(6, 8), contentAsHex(8, 10),
-                                             contentAsHex(10, 16));
-            return result.toLowerCase();
+        return new String(uuidChars());
+    }
+
+    /**
+     * Append the UUID representation, see toUuidString
+     *
+     * @param sb target
+     * @return sb
+     */
+    public StringBuilder appendUuid(StringBuilder sb) {
+        return sb.append(uuidChars());
+    }
+
+    /**
+     * Append the hexadecimal representation, see toString
+     *
+     * @param sb target
+     * @return sb
+     */
+    public StringBuilder appendHex(StringBuilder sb) {
+        return sb.append(hexChars());
+    }
+
+    private char[] uuidChars() {
+        char[] chars = new char[36];
+        int i = TextCodec.encodeHex(h0, 4, chars, 0);
+        chars[i++] = '-';
+        i = TextCodec.encodeHex(h0 << 32, 2, chars, i);
+        chars[i++] = '-';
+        i = TextCodec.encodeHex(h0 << 48, 2, chars, i);
+        chars[i++] = '-';
+        i = TextCodec.encodeHex(h1, 2, chars, i);
+        chars[i++] = '-';
+        TextCodec.encodeHex(h1 << 16, 6, chars, i);
+        return chars;
+    }
+
+    // reverse byte order: the last byte, that is the least significant byte of h3, comes first
+    private char[] hexChars() {
+        char[] chars = new char[64];
+        TextCodec.encodeHexReversed(h3, chars, 0);
+        TextCodec.encodeHexReversed(h2, chars, 16);
+        TextCodec.encodeHexReversed(h1, chars, 32);
+        TextCodec.encodeHexReversed(h0, chars, 48);
+        return chars;
     }
 
     /**
@@ -182,7 +312,9 @@ public class Hash {
      * @return a copy of the internal digest in Hash
      */
     public byte[] toByteArray() {
-        return Arrays.copyOf(bytes, bytes.length);
+        byte[] bytes = new byte[32];
+        copyTo(bytes, 0);
+        return bytes;
     }
 
     /**
@@ -195,14 +327,19 @@ public class Hash {
         return new BigInteger(1, ByteUtils.reverse(toByteArray()));
     }
 
+    /**
+     * @return hexadecimal representation of the digest in reverse byte order
+     */
     @Override
     public String toString() {
-        return ByteUtils.toHex(ByteUtils.reverse(toByteArray()));
+        return new String(hexChars());
     }
 
     @Override
     public int hashCode() {
-        return (((bytes[0] & 0xff) << 8 | (bytes[1] & 0xff)) << 8 | (bytes[2] & 0xff)) << 8 | (bytes[3] & 0xff);
+        // digests are uniformly distributed, folding all 256 bits is sufficient mixing
+        long folded = h0 ^ h1 ^ h2 ^ h3;
+        return (int) (folded ^ (folded >>> 32));
     }
 
     @Override
@@ -212,12 +349,6 @@ public class Hash {
 
         Hash hash = (Hash) o;
 
-        if (!Arrays.equals(bytes, hash.bytes)) return false;
-
-        return true;
-    }
-
-    private String contentAsHex(int i, int j) {
-        return ByteUtils.toHex((Arrays.copyOfRange(bytes, i, j)));
+        return ((h0 ^ hash.h0) | (h1 ^ hash.h1) | (h2 ^ hash.h2) | (h3 ^ hash.h3)) == 0;
     }
 }
@@ -0,0 +1,221 @@
+/**
+ * Copyright 2016 Digital Asset Holdings, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.common;
+
+import org.bouncycastle.crypto.ExtendedDigest;
+import org.bouncycastle.crypto.digests.SHA512tDigest;
+import org.bouncycastle.crypto.digests.SkeinDigest;
+import org.bouncycastle.util.Memoable;
+
+import java.nio.ByteBuffer;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Digest algorithms a ledger may use to compute transaction IDs and Merkle Tree nodes.
+ * All of them produce 32 byte digests so they fit into a Hash.
+ * <p>
+ * Every algorithm has a version that is stable across releases and may be stored or transmitted to identify it.
+ * The algorithm of Hash.of, Hash.merge and thereby of TID and MerkleRoot computation is the default algorithm.
+ * It is SHA256 unless configured with the system property hyperledger.hash.algorithm or with setDefault.
+ * All parties of a ledger must use the same algorithm, as it determines the IDs.
+ *
+ * @see Hash
+ * @see HashEngine
+ */
+public enum HashAlgorithm {
+    /**
+     * SHA256 as implemented by the JCA provider, this is the default
+     */
+    SHA256(0) {
+        @Override
+        HashFunction newFunction() {
+            try {
+                return new JcaFunction(MessageDigest.getInstance("SHA-256"));
+            } catch (NoSuchAlgorithmException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    },
+    /**
+     * SHA512 truncated to 256 bits (FIPS 180-4), faster than SHA256 on 64 bit platforms
+     */
+    SHA512_256(1) {
+        @Override
+        HashFunction newFunction() {
+            return new BouncyCastleFunction(new SHA512tDigest(256));
+        }
+    },
+    /**
+     * Skein with 512 bit state and 256 bit output
+     */
+    SKEIN_512_256(2) {
+        @Override
+        HashFunction newFunction() {
+            return new BouncyCastleFunction(new SkeinDigest(SkeinDigest.SKEIN_512, 256));
+        }
+    };
+
+    /**
+     * name of the system property that selects the default algorithm at startup
+     */
+    public static final String PROPERTY = "hyperledger.hash.algorithm";
+
+    private static volatile HashAlgorithm defaultAlgorithm = valueOf(System.getProperty(PROPERTY, SHA256.name()));
+
+    private final int version;
+
+    HashAlgorithm(int version) {
+        this.version = version;
+    }
+
+    /**
+     * @return the stable identifier of this algorithm
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * @param version stable identifier of an algorithm
+     * @return the algorithm of the version
+     * @throws IllegalArgumentException if the version is unknown
+     */
+    public static HashAlgorithm fromVersion(int version) {
+        for (HashAlgorithm algorithm : values()) {
+            if (algorithm.version == version) {
+                return algorithm;
+            }
+        }
+        throw new IllegalArgumentException("Unknown hash algorithm version " + version);
+    }
+
+    /**
+     * @return the algorithm used for transaction IDs and Merkle Tree nodes
+     */
+    public static HashAlgorithm getDefault() {
+        return defaultAlgorithm;
+    }
+
+    /**
+     * Configure the algorithm used for transaction IDs and Merkle Tree nodes. Set this before any
+     * transaction or block is created, IDs computed with different algorithms do not match.
+     *
+     * @param algorithm the new default
+     */
+    public static void setDefault(HashAlgorithm algorithm) {
+        defaultAlgorithm = algorithm;
+    }
+
+    abstract HashFunction newFunction();
+
+    private static final class JcaFunction implements HashFunction {
+        private final MessageDigest digest;
+
+        JcaFunction(MessageDigest digest) {
+            this.digest = digest;
+        }
+
+        @Override
+        public void update(byte[] data, int offset, int len) {
+            digest.update(data, offset, len);
+        }
+
+        @Override
+        public void update(ByteBuffer data) {
+            if (data.hasArray()) {
+                digest.update(data.array(), data.arrayOffset() + data.position(), data.remaining());
+            } else {
+                digest.update(data.duplicate());
+            }
+        }
+
+        @Override
+        public void digest(byte[] out, int offset) {
+            try {
+                digest.digest(out, offset, HashEngine.DIGEST_LENGTH);
+            } catch (DigestException e) {
+                digest.reset();
+                throw new IllegalArgumentException("Digest does not fit into output buffer", e);
+            }
+        }
+
+        @Override
+        public void reset() {
+            digest.reset();
+        }
+
+        @Override
+        public HashFunction copy() {
+            try {
+                return new JcaFunction((MessageDigest) digest.clone());
+            } catch (CloneNotSupportedException e) {
+                throw new UnsupportedOperationException(e);
+            }
+        }
+    }
+
+    private static final class BouncyCastleFunction implements HashFunction {
+        private final ExtendedDigest digest;
+        private byte[] chunk;
+
+        BouncyCastleFunction(ExtendedDigest digest) {
+            this.digest = digest;
+        }
+
+        @Override
+        public void update(byte[] data, int offset, int len) {
+            digest.update(data, offset, len);
+        }
+
+        @Override
+        public void update(ByteBuffer data) {
+            if (data.hasArray()) {
+                digest.update(data.array(), data.arrayOffset() + data.position(), data.remaining());
+            } else {
+                if (chunk == null) {
+                    chunk = new byte[4096];
+                }
+                ByteBuffer source = data.duplicate();
+                while (source.hasRemaining()) {
+                    int n = Math.min(chunk.length, source.remaining());
+                    source.get(chunk, 0, n);
+                    digest.update(chunk, 0, n);
+                }
+            }
+        }
+
+        @Override
+        public void digest(byte[] out, int offset) {
+            if (offset < 0 || offset + HashEngine.DIGEST_LENGTH > out.length) {
+                digest.reset();
+                throw new IllegalArgumentException("Digest does not fit into output buffer");
+            }
+            digest.doFinal(out, offset);
+        }
+
+        @Override
+        public void reset() {
+            digest.reset();
+        }
+
+        @Override
+        public HashFunction copy() {
+            return new BouncyCastleFunction((ExtendedDigest) ((Memoable) digest).copy());
+        }
+    }
+}
@@ -0,0 +1,210 @@
+/**
+ * Copyright 2016 Digital Asset Holdings, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.common;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Hashing without per call allocation.
+ * <p>
+ * Every thread keeps its own digest function per HashAlgorithm that is reset and reused for each call, results are
+ * written into caller supplied buffers. Hash, MerkleTree and Transaction use this on their hot paths, use it directly
+ * if you hash large amounts of data into buffers you already own.
+ * <p>
+ * The sha256 methods always use SHA256, the hash and merge methods use the given or the default HashAlgorithm.
+ *
+ * @see Hash
+ * @see HashAlgorithm
+ */
+public final class HashEngine {
+    /**
+     * length of a digest in bytes
+     */
+    public static final int DIGEST_LENGTH = 32;
+
+    private static final ThreadLocal<HashFunction[]> functions =
+            ThreadLocal.withInitial(() -> new HashFunction[HashAlgorithm.values().length]);
+    private static final ThreadLocal<byte[]> scratch = ThreadLocal.withInitial(() -> new byte[2 * DIGEST_LENGTH]);
+
+    private HashEngine() {
+    }
+
+    /**
+     * A per thread buffer of two digests for callers within this package that assemble merge input or
+     * receive a digest they immediately copy elsewhere. Never hold on to it across calls.
+     */
+    static byte[] scratch() {
+        return scratch.get();
+    }
+
+    /**
+     * The digest function of this thread for an algorithm. Never hold on to it across calls.
+     */
+    static HashFunction function(HashAlgorithm algorithm) {
+        HashFunction[] perAlgorithm = functions.get();
+        HashFunction function = perAlgorithm[algorithm.ordinal()];
+        if (function == null) {
+            function = algorithm.newFunction();
+            perAlgorithm[algorithm.ordinal()] = function;
+        }
+        return function;
+    }
+
+    /**
+     * SHA256 hash of a slice of an array into a caller supplied buffer
+     *
+     * @param data      arbitrary data
+     * @param offset    start hashing at this offset
+     * @param len       hash len number of bytes
+     * @param out       digest is written here
+     * @param outOffset first byte of the digest in out, at least DIGEST_LENGTH bytes must be available
+     */
+    public static void sha256(byte[] data, int offset, int len, byte[] out, int outOffset) {
+        hash(HashAlgorithm.SHA256, data, offset, len, out, outOffset);
+    }
+
+    /**
+     * SHA256 hash of the remaining content of a heap or direct buffer into a caller supplied buffer.
+     * The position of the buffer is not altered.
+     *
+     * @param data      arbitrary data between position and limit
+     * @param out       digest is written here
+     * @param outOffset first byte of the digest in out, at least DIGEST_LENGTH bytes must be available
+     */
+    public static void sha256(ByteBuffer data, byte[] out, int outOffset) {
+        hash(HashAlgorithm.SHA256, data, out, outOffset);
+    }
+
+    /**
+     * SHA256(SHA256(data)) of a slice of an array into a caller supplied buffer
+     *
+     * @param data      arbitrary data
+     * @param offset    start hashing at this offset
+     * @param len       hash len number of bytes
+     * @param out       digest is written here
+     * @param outOffset first byte of the digest in out, at least DIGEST_LENGTH bytes must be available
+     */
+    public static void doubleSha256(byte[] data, int offset, int len, byte[] out, int outOffset) {
+        HashFunction function = function(HashAlgorithm.SHA256);
+        function.update(data, offset, len);
+        function.digest(out, outOffset);
+        function.update(out, outOffset, DIGEST_LENGTH);
+        function.digest(out, outOffset);
+    }
+
+    /**
+     * Hash of a slice of an array into a caller supplied buffer
+     *
+     * @param algorithm the digest algorithm
+     * @param data      arbitrary data
+     * @param offset    start hashing at this offset
+     * @param len       hash len number of bytes
+     * @param out       digest is written here
+     * @param outOffset first byte of the digest in out, at least DIGEST_LENGTH bytes must be available
+     */
+    public static void hash(HashAlgorithm algorithm, byte[] data, int offset, int len, byte[] out, int outOffset) {
+        HashFunction function = function(algorithm);
+        function.update(data, offset, len);
+        function.digest(out, outOffset);
+    }
+
+    /**
+     * Hash of the remaining content of a heap or direct buffer into a caller supplied buffer.
+     * The position of the buffer is not altered.
+     *
+     * @param algorithm the digest algorithm
+     * @param data      arbitrary data between position and limit
+     * @param out       digest is written here
+     * @param outOffset first byte of the digest in out, at least DIGEST_LENGTH bytes must be available
+     */
+    public static void hash(HashAlgorithm algorithm, ByteBuffer data, byte[] out, int outOffset) {
+        HashFunction function = function(algorithm);
+        function.update(data);
+        function.digest(out, outOffset);
+    }
+
+    /**
+     * Merge two digests for Merkle Tree calculation into a caller supplied buffer with the default algorithm.
+     * The output may overlap any of the inputs.
+     *
+     * @param a         a digest
+     * @param aOffset   first byte of a
+     * @param b         another digest
+     * @param bOffset   first byte of b
+     * @param out       H(H(a||b)) is written here
+     * @param outOffset first byte of the digest in out
+     * @see HashAlgorithm#getDefault()
+     */
+    public static void merge(byte[] a, int aOffset, byte[] b, int bOffset, byte[] out, int outOffset) {
+        merge(HashAlgorithm.getDefault(), a, aOffset, b, bOffset, out, outOffset);
+    }
+
+    /**
+     * Merge two digests for Merkle Tree calculation into a caller supplied buffer.
+     * The output may overlap any of the inputs.
+     *
+     * @param algorithm the digest algorithm
+     * @param a         a digest
+     * @param aOffset   first byte of a
+     * @param b         another digest
+     * @param bOffset   first byte of b
+     * @param out       H(H(a||b)) is written here
+     * @param outOffset first byte of the digest in out
+     */
+    public static void merge(HashAlgorithm algorithm, byte[] a, int aOffset, byte[] b, int bOffset, byte[] out, int outOffset) {
+        HashFunction function = function(algorithm);
+        function.update(a, aOffset, DIGEST_LENGTH);
+        function.update(b, bOffset, DIGEST_LENGTH);
+        function.digest(out, outOffset);
+        function.update(out, outOffset, DIGEST_LENGTH);
+        function.digest(out, outOffset);
+    }
+
+    /**
+     * Merge consecutive pairs of digests for Merkle Tree calculation, e.g. a whole level of a tree.
+     * Pair i is read from in[inOffset + 64 * i] and H(H(left||right)) written to out[outOffset + 32 * i].
+     * The output may be the same array and offset as the input, so a tree level can be reduced in place.
+     *
+     * @param algorithm the digest algorithm
+     * @param in        pairs of digests
+     * @param inOffset  first byte of the first pair
+     * @param out       merged digests are written here
+     * @param outOffset first byte of the first merged digest
+     * @param count     number of pairs
+     */
+    public static void mergeAll(HashAlgorithm algorithm, byte[] in, int inOffset, byte[] out, int outOffset, int count) {
+        for (int i = 0; i < count; i++) {
+            int pair = inOffset + 2 * DIGEST_LENGTH * i;
+            merge(algorithm, in, pair, in, pair + DIGEST_LENGTH, out, outOffset + DIGEST_LENGTH * i);
+        }
+    }
+
+    /**
+     * Hash of each message into a caller supplied buffer, e.g. IDs of all transactions of a block.
+     *
+     * @param algorithm the digest algorithm
+     * @param messages  arbitrary data
+     * @param out       digest of message i is written to out[outOffset + 32 * i]
+     * @param outOffset first byte of the first digest
+     */
+    public static void hashAll(HashAlgorithm algorithm, List<byte[]> messages, byte[] out, int outOffset) {
+        for (int i = 0; i < messages.size(); i++) {
+            byte[] message = messages.get(i);
+            hash(algorithm, message, 0, message.length, out, outOffset + DIGEST_LENGTH * i);
+        }
+    }
+}
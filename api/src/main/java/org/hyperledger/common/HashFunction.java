@@ -0,0 +1,46 @@
+/**
+ * Copyright 2016 Digital Asset Holdings, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.common;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A stateful digest computation of a HashAlgorithm. Instances are not thread safe, HashEngine keeps one per thread
+ * and algorithm.
+ *
+ * @see HashAlgorithm
+ * @see HashEngine
+ */
+interface HashFunction {
+    void update(byte[] data, int offset, int len);
+
+    /**
+     * digest the remaining content of the buffer without altering its position
+     */
+    void update(ByteBuffer data);
+
+    /**
+     * write the 32 byte digest and reset for the next computation
+     */
+    void digest(byte[] out, int offset);
+
+    void reset();
+
+    /**
+     * @return an independent function with the same intermediate state
+     */
+    HashFunction copy();
+}
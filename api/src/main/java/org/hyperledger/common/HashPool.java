@@ -0,0 +1,177 @@
+/**
+ * Copyright 2016 Digital Asset Holdings, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.common;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+
+/**
+ * An intern pool of Hashes of one type, e.g. TID, BID or MerkleRoot.
+ * <p>
+ * A long running client sees the same ID many times: as the ID of a transaction, as input of others, in every
+ * block event and listener. Interning decoded IDs keeps one instance per distinct digest that is still referenced.
+ * The pool only holds weak references, so it does not keep IDs alive, entries of collected IDs are expunged
+ * on subsequent access.
+ * <p>
+ * The table is split into stripes that are locked independently, so decoders on different threads rarely contend.
+ * An entry costs a weak reference, no key object is allocated since the Hash is its own key.
+ *
+ * @param <T> type of the pooled Hashes, instances of different subclasses never equal each other
+ * @see org.hyperledger.transaction.TID
+ * @see org.hyperledger.block.BID
+ */
+public final class HashPool<T extends Hash> {
+    private static final int DEFAULT_STRIPES = 16;
+
+    private final Stripe<T>[] stripes;
+    private final int stripeShift;
+
+    public HashPool() {
+        this(DEFAULT_STRIPES);
+    }
+
+    /**
+     * @param concurrency expected number of threads interning at the same time, rounded up to a power of two
+     */
+    public HashPool(int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Concurrency must be positive");
+        }
+        int n = Integer.highestOneBit(concurrency - 1) << 1;
+        n = Math.max(1, Math.min(n, 1 << 16));
+        stripes = newStripes(n);
+        for (int i = 0; i < n; i++) {
+            stripes[i] = new Stripe<>();
+        }
+        stripeShift = 32 - Integer.numberOfTrailingZeros(n);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends Hash> Stripe<T>[] newStripes(int length) {
+        return (Stripe<T>[]) new Stripe<?>[length];
+    }
+
+    /**
+     * Canonical instance of a Hash
+     *
+     * @param hash a Hash, possibly just decoded
+     * @return the pooled instance equal to hash, or hash itself if there was none, in which case it is pooled
+     */
+    public T intern(T hash) {
+        if (hash == null) {
+            return null;
+        }
+        int h = spread(hash.hashCode());
+        // high bits select the stripe, low bits the bucket within
+        return stripes[stripeShift == 32 ? 0 : h >>> stripeShift].intern(hash, h);
+    }
+
+    /**
+     * @return number of pooled Hashes, including those collected but not yet expunged
+     */
+    public int size() {
+        int size = 0;
+        for (Stripe<T> stripe : stripes) {
+            size += stripe.size();
+        }
+        return size;
+    }
+
+    private static int spread(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        return h ^ (h >>> 13);
+    }
+
+    private static final class Entry<T> extends WeakReference<T> {
+        final int hash;
+        Entry<T> next;
+
+        Entry(T referent, int hash, Entry<T> next, ReferenceQueue<T> queue) {
+            super(referent, queue);
+            this.hash = hash;
+            this.next = next;
+        }
+    }
+
+    private static final class Stripe<T extends Hash> {
+        private final ReferenceQueue<T> queue = new ReferenceQueue<>();
+        private Entry<T>[] table = newTable(16);
+        private int size;
+
+        @SuppressWarnings("unchecked")
+        private static <T> Entry<T>[] newTable(int length) {
+            return (Entry<T>[]) new Entry<?>[length];
+        }
+
+        synchronized T intern(T hash, int h) {
+            expunge();
+            int index = h & (table.length - 1);
+            for (Entry<T> e = table[index]; e != null; e = e.next) {
+                if (e.hash == h) {
+                    T pooled = e.get();
+                    if (hash.equals(pooled)) {
+                        return pooled;
+                    }
+                }
+            }
+            table[index] = new Entry<>(hash, h, table[index], queue);
+            if (++size > table.length * 3 / 4) {
+                resize();
+            }
+            return hash;
+        }
+
+        synchronized int size() {
+            expunge();
+            return size;
+        }
+
+        private void expunge() {
+            Entry<?> stale;
+            while ((stale = (Entry<?>) queue.poll()) != null) {
+                int index = stale.hash & (table.length - 1);
+                Entry<T> prev = null;
+                for (Entry<T> e = table[index]; e != null; prev = e, e = e.next) {
+                    if (e == stale) {
+                        if (prev == null) {
+                            table[index] = e.next;
+                        } else {
+                            prev.next = e.next;
+                        }
+                        size--;
+                        break;
+                    }
+                }
+            }
+        }
+
+        private void resize() {
+            Entry<T>[] old = table;
+            table = newTable(old.length * 2);
+            for (Entry<T> head : old) {
+                Entry<T> e = head;
+                while (e != null) {
+                    Entry<T> next = e.next;
+                    int index = e.hash & (table.length - 1);
+                    e.next = table[index];
+                    table[index] = e;
+                    e = next;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/**
+ * Copyright 2016 Digital Asset Holdings, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.common;
+
+/**
+ * The state of a digest computation after a fixed prefix, e.g. the encoded inputs shared by many transactions.
+ * Messages that start with the prefix are hashed from a copy of that state, so the prefix is hashed only once.
+ * The digests equal those of the whole messages.
+ * <p>
+ * Thread safe, the state is only read after construction.
+ *
+ * @see HashFunction#copy()
+ */
+public final class HashPrefix {
+    private final HashAlgorithm algorithm;
+    private final HashFunction state;
+    private final int length;
+
+    /**
+     * @param algorithm the digest algorithm
+     * @param prefix    start of the messages
+     * @param offset    first byte of the prefix
+     * @param len       length of the prefix
+     */
+    public HashPrefix(HashAlgorithm algorithm, byte[] prefix, int offset, int len) {
+        this.algorithm = algorithm;
+        this.state = algorithm.newFunction();
+        state.update(prefix, offset, len);
+        this.length = len;
+    }
+
+    public HashAlgorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * @return number of bytes hashed into the state
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Hash of the prefix followed by a slice of an array into a caller supplied buffer
+     *
+     * @param data      the rest of the message
+     * @param offset    start hashing at this offset
+     * @param len       hash len number of bytes
+     * @param out       digest is written here
+     * @param outOffset first byte of the digest in out, at least DIGEST_LENGTH bytes must be available
+     */
+    public void hash(byte[] data, int offset, int len, byte[] out, int outOffset) {
+        HashFunction function = state.copy();
+        function.update(data, offset, len);
+        function.digest(out, outOffset);
+    }
+
+    /**
+     * Hash of a message that starts with the prefix, only the bytes after it are hashed
+     *
+     * @param message the prefix followed by the rest of the message, the prefix is not compared
+     * @return H(message)
+     */
+    public Hash hashMessage(byte[] message) {
+        byte[] buffer = HashEngine.scratch();
+        hash(message, length, message.length - length, buffer, 0);
+        return new Hash(buffer, 0);
+    }
+}
@@ -34,6 +34,7 @@ public class PrivateKey implements Key {
     private final byte[] priv;
     private final Cryptography crypto;
     private PublicKey publicKey = null; // lazy initialization
+    private volatile SigningKey signingKey; // lazy initialization
 
     /**
      * Create from uncompressed binary representation
@@ -69,7 +70,19 @@ public class PrivateKey implements Key {
      * @return signature
      */
     public byte[] sign(byte[] hash) {
-        return crypto.sign(hash, toByteArray());
+        return getSigningKey().sign(hash);
+    }
+
+    /**
+     * @return this key parsed for signing once, see Cryptography.signingKey
+     */
+    public SigningKey getSigningKey() {
+        SigningKey key = signingKey;
+        if (key == null) {
+            key = crypto.signingKey(priv);
+            signingKey = key;
+        }
+        return key;
     }
 
     @Override
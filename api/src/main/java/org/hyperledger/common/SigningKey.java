@@ -0,0 +1,33 @@
+/**
+ * Copyright 2016 Digital Asset Holdings, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.common;
+
+/**
+ * A private key prepared for signing, e.g. parsed into the representation of a Cryptography implementation, so
+ * that signing many digests does not parse the key again. Implementations are thread safe.
+ *
+ * @see Cryptography#signingKey(byte[])
+ * @see PrivateKey#getSigningKey()
+ */
+public interface SigningKey {
+    /**
+     * Sign a digest
+     *
+     * @param hash arbitrary data
+     * @return signature
+     */
+    byte[] sign(byte[] hash);
+}
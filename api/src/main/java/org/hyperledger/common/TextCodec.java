@@ -0,0 +1,305 @@
+/**
+ * Copyright 2016 Digital Asset Holdings, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.common;
+
+import java.io.IOException;
+
+/**
+ * Text encodings of binary data: hexadecimal, also in reverse byte order as used for Hash, and Base58.
+ * <p>
+ * Encoders append to a caller supplied StringBuilder or Appendable, decoders read a CharSequence and write
+ * into a caller supplied array, so that logging an ID or parsing one does not create intermediate copies.
+ * Hex is table driven. Base58 works on limbs of 58^5 and 2^32 in a scratch array instead of BigInteger division.
+ *
+ * @see ByteUtils
+ */
+public final class TextCodec {
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final char[] B58 = "123456789ABCDEFGHJKLMNPQRSTUVWXYZabcdefghijkmnopqrstuvwxyz".toCharArray();
+    private static final byte[] HEX_VALUE = new byte[128];
+    private static final byte[] B58_VALUE = new byte[128];
+
+    // five Base58 digits fit into an int limb
+    private static final int B58_LIMB = 58 * 58 * 58 * 58 * 58;
+    private static final int B58_LIMB_DIGITS = 5;
+
+    static {
+        for (int i = 0; i < 128; i++) {
+            HEX_VALUE[i] = -1;
+            B58_VALUE[i] = -1;
+        }
+        for (int i = 0; i < 16; i++) {
+            HEX_VALUE[HEX[i]] = (byte) i;
+            HEX_VALUE[Character.toUpperCase(HEX[i])] = (byte) i;
+        }
+        for (int i = 0; i < B58.length; i++) {
+            B58_VALUE[B58[i]] = (byte) i;
+        }
+    }
+
+    private TextCodec() {
+    }
+
+    /**
+     * @param data arbitrary data
+     * @return lower case hexadecimal representation
+     */
+    public static String toHex(byte[] data) {
+        char[] chars = new char[2 * data.length];
+        for (int i = 0; i < data.length; i++) {
+            chars[2 * i] = HEX[(data[i] >> 4) & 0xf];
+            chars[2 * i + 1] = HEX[data[i] & 0xf];
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Append bytes as lower case hexadecimal
+     *
+     * @param data   arbitrary data
+     * @param offset first byte to encode
+     * @param len    number of bytes to encode
+     * @param sb     target
+     * @return sb
+     */
+    public static StringBuilder appendHex(byte[] data, int offset, int len, StringBuilder sb) {
+        sb.ensureCapacity(sb.length() + 2 * len);
+        for (int i = offset; i < offset + len; i++) {
+            sb.append(HEX[(data[i] >> 4) & 0xf]).append(HEX[data[i] & 0xf]);
+        }
+        return sb;
+    }
+
+    /**
+     * Append bytes as lower case hexadecimal, last byte first
+     *
+     * @param data   arbitrary data
+     * @param offset first byte of the range to encode
+     * @param len    number of bytes to encode
+     * @param sb     target
+     * @return sb
+     */
+    public static StringBuilder appendHexReversed(byte[] data, int offset, int len, StringBuilder sb) {
+        sb.ensureCapacity(sb.length() + 2 * len);
+        for (int i = offset + len - 1; i >= offset; i--) {
+            sb.append(HEX[(data[i] >> 4) & 0xf]).append(HEX[data[i] & 0xf]);
+        }
+        return sb;
+    }
+
+    /**
+     * Write the most significant bytes of a long as lower case hexadecimal
+     *
+     * @param value  big endian bytes
+     * @param bytes  number of bytes to encode, starting with the most significant
+     * @param out    target
+     * @param offset first character to write
+     * @return offset of the next character
+     */
+    public static int encodeHex(long value, int bytes, char[] out, int offset) {
+        for (int shift = 60; shift > 60 - 8 * bytes; shift -= 4) {
+            out[offset++] = HEX[(int) (value >>> shift) & 0xf];
+        }
+        return offset;
+    }
+
+    /**
+     * Write the bytes of a long as lower case hexadecimal, least significant byte first
+     *
+     * @param value  big endian bytes
+     * @param out    target
+     * @param offset first character to write
+     * @return offset of the next character
+     */
+    public static int encodeHexReversed(long value, char[] out, int offset) {
+        for (int shift = 0; shift < 64; shift += 8) {
+            out[offset++] = HEX[(int) (value >>> (shift + 4)) & 0xf];
+            out[offset++] = HEX[(int) (value >>> shift) & 0xf];
+        }
+        return offset;
+    }
+
+    /**
+     * Append bytes as lower case hexadecimal to any Appendable, e.g. a Writer
+     *
+     * @param data   arbitrary data
+     * @param offset first byte to encode
+     * @param len    number of bytes to encode
+     * @param out    target
+     * @throws IOException if out does
+     */
+    public static void appendHex(byte[] data, int offset, int len, Appendable out) throws IOException {
+        for (int i = offset; i < offset + len; i++) {
+            out.append(HEX[(data[i] >> 4) & 0xf]).append(HEX[data[i] & 0xf]);
+        }
+    }
+
+    /**
+     * @param hex hexadecimal of either case
+     * @return decoded bytes or null if hex is not of even length or has non hexadecimal characters
+     */
+    public static byte[] fromHex(CharSequence hex) {
+        if (hex.length() % 2 != 0) {
+            return null;
+        }
+        byte[] data = new byte[hex.length() / 2];
+        return decodeHex(hex, data, 0, false) ? data : null;
+    }
+
+    /**
+     * Decode hexadecimal into an array
+     *
+     * @param hex      hexadecimal of either case, of length 2 * number of bytes
+     * @param out      target
+     * @param offset   first byte to write
+     * @param reversed if true the first two characters are written to the last byte
+     * @return false if hex has non hexadecimal characters, out is then partially written
+     */
+    public static boolean decodeHex(CharSequence hex, byte[] out, int offset, boolean reversed) {
+        int len = hex.length() / 2;
+        for (int i = 0; i < len; i++) {
+            int hi = hexValue(hex.charAt(2 * i));
+            int lo = hexValue(hex.charAt(2 * i + 1));
+            if ((hi | lo) < 0) {
+                return false;
+            }
+            out[reversed ? offset + len - 1 - i : offset + i] = (byte) (hi << 4 | lo);
+        }
+        return true;
+    }
+
+    private static int hexValue(char c) {
+        return c < 128 ? HEX_VALUE[c] : -1;
+    }
+
+    /**
+     * @param data arbitrary data
+     * @return Base58 representation
+     */
+    public static String toBase58(byte[] data) {
+        return appendBase58(data, 0, data.length, new StringBuilder()).toString();
+    }
+
+    /**
+     * Append bytes in Base58, leading zero bytes are encoded as '1'
+     *
+     * @param data   arbitrary data
+     * @param offset first byte to encode
+     * @param len    number of bytes to encode
+     * @param sb     target
+     * @return sb
+     */
+    public static StringBuilder appendBase58(byte[] data, int offset, int len, StringBuilder sb) {
+        int end = offset + len;
+        int zeros = 0;
+        while (offset + zeros < end && data[offset + zeros] == 0) {
+            zeros++;
+        }
+        // log(256) / log(58^5) < 0.274 limbs per byte
+        int[] limbs = new int[(end - offset - zeros) * 274 / 1000 + 1];
+        int used = 0;
+        for (int i = offset + zeros; i < end; ) {
+            // up to three bytes at a time keep limb * 2^24 + carry within a long
+            int n = Math.min(3, end - i);
+            long carry = 0;
+            for (int k = 0; k < n; k++) {
+                carry = carry << 8 | (data[i++] & 0xff);
+            }
+            int shift = 8 * n;
+            for (int j = 0; j < used; j++) {
+                long v = ((long) limbs[j] << shift) + carry;
+                limbs[j] = (int) (v % B58_LIMB);
+                carry = v / B58_LIMB;
+            }
+            while (carry != 0) {
+                limbs[used++] = (int) (carry % B58_LIMB);
+                carry /= B58_LIMB;
+            }
+        }
+
+        sb.ensureCapacity(sb.length() + zeros + used * B58_LIMB_DIGITS);
+        for (int i = 0; i < zeros; i++) {
+            sb.append('1');
+        }
+        if (used == 0) {
+            return sb;
+        }
+        // most significant limb without leading '1's, all others with all five digits
+        int start = sb.length();
+        int top = limbs[used - 1];
+        while (top != 0) {
+            sb.insert(start, B58[top % 58]);
+            top /= 58;
+        }
+        for (int j = used - 2; j >= 0; j--) {
+            int limb = limbs[j];
+            int at = sb.length();
+            sb.append("11111");
+            for (int d = B58_LIMB_DIGITS - 1; d >= 0; d--) {
+                sb.setCharAt(at + d, B58[limb % 58]);
+                limb /= 58;
+            }
+        }
+        return sb;
+    }
+
+    /**
+     * @param base58 Base58 text, leading '1's are decoded as zero bytes
+     * @return decoded bytes or null if base58 has characters outside the Base58 alphabet
+     */
+    public static byte[] fromBase58(CharSequence base58) {
+        int len = base58.length();
+        int zeros = 0;
+        while (zeros < len && base58.charAt(zeros) == '1') {
+            zeros++;
+        }
+        // log(58) / log(2^32) < 0.1831 limbs per character
+        int[] limbs = new int[(len - zeros) * 1831 / 10000 + 1];
+        int used = 0;
+        for (int i = zeros; i < len; ) {
+            int n = Math.min(B58_LIMB_DIGITS, len - i);
+            long carry = 0;
+            long multiplier = 1;
+            for (int k = 0; k < n; k++) {
+                char c = base58.charAt(i++);
+                int value = c < 128 ? B58_VALUE[c] : -1;
+                if (value < 0) {
+                    return null;
+                }
+                carry = carry * 58 + value;
+                multiplier *= 58;
+            }
+            for (int j = 0; j < used; j++) {
+                long v = (limbs[j] & 0xffffffffL) * multiplier + carry;
+                limbs[j] = (int) v;
+                carry = v >>> 32;
+            }
+            if (carry != 0) {
+                limbs[used++] = (int) carry;
+            }
+        }
+
+        int significant = used * 4;
+        if (used > 0) {
+            significant -= Integer.numberOfLeadingZeros(limbs[used - 1]) / 8;
+        }
+        byte[] data = new byte[zeros + significant];
+        for (int i = 0; i < significant; i++) {
+            data[data.length - 1 - i] = (byte) (limbs[i / 4] >>> (8 * (i % 4)));
+        }
+        return data;
+    }
+}
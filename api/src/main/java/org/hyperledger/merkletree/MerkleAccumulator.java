@@ -0,0 +1,118 @@
+/**
+ * Copyright 2016 Digital Asset Holdings, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.merkletree;
+
+import org.hyperledger.common.Hash;
+import org.hyperledger.common.HashAlgorithm;
+import org.hyperledger.common.HashEngine;
+
+/**
+ * Append only Merkle Tree that keeps only its right frontier, that is the roots of the perfect subtrees
+ * the leaves added so far decompose into. There is one for every bit set in the leaf count, so at most
+ * 31 digests are kept regardless of the number of leaves.
+ * <p>
+ * Adding a leaf costs one merge amortized, the root is available at any time with O(log n) merges and equals
+ * MerkleTree.computeMerkleRoot of all leaves added. Not thread safe.
+ *
+ * @see MerkleTree
+ */
+public class MerkleAccumulator {
+    private static final int DIGEST = HashEngine.DIGEST_LENGTH;
+
+    private final HashAlgorithm algorithm;
+    // root of the perfect subtree of height h at [h * 32], present if bit h of count is set
+    private final byte[] frontier = new byte[32 * DIGEST];
+    private final byte[] buffer = new byte[2 * DIGEST];
+    private int count;
+    private MerkleRoot root;
+
+    public MerkleAccumulator() {
+        this(HashAlgorithm.getDefault());
+    }
+
+    /**
+     * @param algorithm digest algorithm of the ledger
+     */
+    public MerkleAccumulator(HashAlgorithm algorithm) {
+        this.algorithm = algorithm;
+    }
+
+    /**
+     * Append a leaf
+     *
+     * @param node a leaf, e.g. a transaction
+     */
+    public void add(MerkleTreeNode node) {
+        add(node.getID());
+    }
+
+    /**
+     * Append a leaf
+     *
+     * @param leaf digest of the leaf, e.g. a transaction ID
+     */
+    public void add(Hash leaf) {
+        if (count == Integer.MAX_VALUE) {
+            throw new IllegalStateException("Merkle Tree is full");
+        }
+        // like incrementing a binary counter, complete subtrees of equal height merge and carry upwards
+        leaf.copyTo(buffer, DIGEST);
+        int height = 0;
+        while ((count & (1 << height)) != 0) {
+            System.arraycopy(frontier, height * DIGEST, buffer, 0, DIGEST);
+            HashEngine.merge(algorithm, buffer, 0, buffer, DIGEST, buffer, DIGEST);
+            height++;
+        }
+        System.arraycopy(buffer, DIGEST, frontier, height * DIGEST, DIGEST);
+        count++;
+        root = null;
+    }
+
+    /**
+     * @return number of leaves added
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * @return Merkle root of the leaves added so far
+     * @throws IllegalStateException if no leaf was added
+     */
+    public MerkleRoot getRoot() {
+        if (count == 0) {
+            throw new IllegalStateException("Merkle root of an empty list is undefined");
+        }
+        if (root == null) {
+            int height = Integer.numberOfTrailingZeros(count);
+            System.arraycopy(frontier, height * DIGEST, buffer, DIGEST, DIGEST);
+            for (int next = height + 1; next < 32; next++) {
+                if ((count & (1 << next)) == 0) {
+                    continue;
+                }
+                // the right node is the last of its levels up to here, so it is merged with itself
+                for (; height < next; height++) {
+                    HashEngine.merge(algorithm, buffer, DIGEST, buffer, DIGEST, buffer, DIGEST);
+                }
+                System.arraycopy(frontier, next * DIGEST, buffer, 0, DIGEST);
+                HashEngine.merge(algorithm, buffer, 0, buffer, DIGEST, buffer, DIGEST);
+                height = next + 1;
+            }
+            root = new MerkleRoot(Hash.createFromArray(buffer, DIGEST));
+        }
+        return root;
+    }
+}
@@ -0,0 +1,210 @@
+/**
+ * Copyright 2016 Digital Asset Holdings, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.merkletree;
+
+import org.hyperledger.common.Hash;
+import org.hyperledger.common.HashAlgorithm;
+import org.hyperledger.common.HashEngine;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Merkle root computation over leaf digests packed into a byte array, 32 bytes per leaf.
+ * <p>
+ * The tree is reduced level by level: the first level is merged from the leaves into a per thread scratch
+ * buffer, all further levels are merged in place. An odd last node of a level is merged with itself, as in
+ * MerkleTree.computeMerkleRoot. Leaves are never modified.
+ * <p>
+ * Trees of at least PARALLEL_THRESHOLD leaves are split into subtrees of equal power of two size that are
+ * reduced in a ForkJoinPool, the subtree roots are then reduced on the calling thread.
+ *
+ * @see MerkleTree
+ */
+public final class MerkleEngine {
+    private static final int DIGEST = HashEngine.DIGEST_LENGTH;
+
+    /**
+     * minimum number of leaves to compute a root in parallel
+     */
+    public static final int PARALLEL_THRESHOLD = 1 << 13;
+
+    // subtrees reduced by one task have at least this many leaves
+    private static final int MIN_SUBTREE = 1 << 10;
+
+    // larger scratch buffers are not kept between calls
+    private static final int MAX_RETAINED_SCRATCH = 1 << 20;
+
+    private static final ThreadLocal<byte[]> scratch = new ThreadLocal<>();
+
+    private MerkleEngine() {
+    }
+
+    /**
+     * Pack the IDs of nodes into an array for computeRoot
+     *
+     * @param nodes Merkle Tree nodes, e.g. transactions of a block
+     * @return their IDs, 32 bytes each
+     */
+    public static byte[] pack(List<? extends MerkleTreeNode> nodes) {
+        byte[] leaves = new byte[nodes.size() * DIGEST];
+        for (int i = 0; i < nodes.size(); i++) {
+            nodes.get(i).getID().copyTo(leaves, i * DIGEST);
+        }
+        return leaves;
+    }
+
+    /**
+     * Merkle root of packed leaves with the default algorithm
+     *
+     * @param leaves leaf digests, 32 bytes each
+     * @param count  number of leaves
+     * @return root digest
+     */
+    public static MerkleRoot computeRoot(byte[] leaves, int count) {
+        return computeRoot(leaves, count, HashAlgorithm.getDefault());
+    }
+
+    /**
+     * Merkle root of packed leaves, in the common ForkJoinPool if there are many
+     *
+     * @param leaves    leaf digests, 32 bytes each
+     * @param count     number of leaves
+     * @param algorithm digest algorithm of the ledger
+     * @return root digest
+     */
+    public static MerkleRoot computeRoot(byte[] leaves, int count, HashAlgorithm algorithm) {
+        return computeRoot(leaves, count, algorithm, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Merkle root of packed leaves
+     *
+     * @param leaves    leaf digests, 32 bytes each
+     * @param count     number of leaves
+     * @param algorithm digest algorithm of the ledger
+     * @param pool      computes subtrees if there are at least PARALLEL_THRESHOLD leaves
+     * @return root digest
+     * @throws IllegalArgumentException if count is not positive or exceeds the leaves
+     */
+    public static MerkleRoot computeRoot(byte[] leaves, int count, HashAlgorithm algorithm, ForkJoinPool pool) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("Merkle root of an empty list is undefined");
+        }
+        if ((long) count * DIGEST > leaves.length) {
+            throw new IllegalArgumentException("Leaf count exceeds the packed leaves");
+        }
+        if (count == 1) {
+            return new MerkleRoot(Hash.createFromArray(leaves, 0));
+        }
+        if (count < PARALLEL_THRESHOLD || pool.getParallelism() < 2) {
+            byte[] level = scratch(count);
+            reduce(leaves, 0, count, Integer.MAX_VALUE, level, 0, algorithm);
+            return new MerkleRoot(Hash.createFromArray(level, 0));
+        }
+
+        int subtreeHeight = subtreeHeight(count, pool.getParallelism());
+        int subtrees = (count + (1 << subtreeHeight) - 1) >>> subtreeHeight;
+        byte[] roots = new byte[(subtrees + 1) * DIGEST];
+        pool.invoke(new SubtreeTask(leaves, count, subtreeHeight, 0, subtrees, roots, algorithm));
+
+        reduce(roots, 0, subtrees, Integer.MAX_VALUE, roots, 0, algorithm);
+        return new MerkleRoot(Hash.createFromArray(roots, 0));
+    }
+
+    // subtrees of 2^height leaves, about four per worker but not smaller than MIN_SUBTREE
+    private static int subtreeHeight(int count, int parallelism) {
+        int size = Math.max(MIN_SUBTREE, Integer.highestOneBit(count / (4 * parallelism)));
+        return Integer.numberOfTrailingZeros(size);
+    }
+
+    /**
+     * Reduce count digests to the node of the given height above them, or to the root if height exceeds the tree.
+     * The first level is read from in and merged into out, further levels are merged in place in out.
+     * out must hold (count + 1) / 2 + 1 digests, the result is its first digest.
+     */
+    private static void reduce(byte[] in, int inOffset, int count, int height, byte[] out, int outOffset,
+                               HashAlgorithm algorithm) {
+        byte[] source = in;
+        int sourceOffset = inOffset;
+        for (int level = 0; level < height && (count > 1 || height != Integer.MAX_VALUE); level++) {
+            int pairs = count / 2;
+            HashEngine.mergeAll(algorithm, source, sourceOffset, out, outOffset, pairs);
+            if ((count & 1) == 1) {
+                // the last node of an odd level is merged with itself
+                int last = sourceOffset + (count - 1) * DIGEST;
+                HashEngine.merge(algorithm, source, last, source, last, out, outOffset + pairs * DIGEST);
+            }
+            count = (count + 1) / 2;
+            source = out;
+            sourceOffset = outOffset;
+        }
+        if (source != out) {
+            System.arraycopy(source, sourceOffset, out, outOffset, DIGEST);
+        }
+    }
+
+    private static byte[] scratch(int count) {
+        int size = ((count + 1) / 2 + 1) * DIGEST;
+        byte[] buffer = scratch.get();
+        if (buffer == null || buffer.length < size) {
+            buffer = new byte[size];
+            if (size <= MAX_RETAINED_SCRATCH) {
+                scratch.set(buffer);
+            }
+        }
+        return buffer;
+    }
+
+    private static final class SubtreeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final byte[] leaves;
+        private final int count;
+        private final int height;
+        private final int from;
+        private final int to;
+        private final byte[] roots;
+        private final HashAlgorithm algorithm;
+
+        SubtreeTask(byte[] leaves, int count, int height, int from, int to, byte[] roots, HashAlgorithm algorithm) {
+            this.leaves = leaves;
+            this.count = count;
+            this.height = height;
+            this.from = from;
+            this.to = to;
+            this.roots = roots;
+            this.algorithm = algorithm;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new SubtreeTask(leaves, count, height, from, middle, roots, algorithm),
+                        new SubtreeTask(leaves, count, height, middle, to, roots, algorithm));
+                return;
+            }
+            int first = from << height;
+            int n = Math.min(1 << height, count - first);
+            byte[] level = scratch(n);
+            // a partial last subtree is raised to the full subtree height by merging its root with itself
+            reduce(leaves, first * DIGEST, n, height, level, 0, algorithm);
+            System.arraycopy(level, 0, roots, from * DIGEST, DIGEST);
+        }
+    }
+}
@@ -0,0 +1,213 @@
+/**
+ * Copyright 2016 Digital Asset Holdings, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.merkletree;
+
+import org.hyperledger.common.Hash;
+import org.hyperledger.common.HashAlgorithm;
+import org.hyperledger.common.HashEngine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Append only Merkle Tree that keeps the roots of all its perfect subtrees, so that unlike MerkleAccumulator it
+ * can prove any leaf added so far. The perfect subtrees of one height form a level, level h holds size &gt;&gt; h
+ * nodes. The tallest node of every level with an odd node count is a peak, together they make the mountain range.
+ * <p>
+ * Adding a leaf costs one merge amortized and 64 bytes of storage, a proof costs O(log n) merges. The root equals
+ * MerkleTree.computeMerkleRoot of all leaves, and proofs are MerkleProofs of that tree. Removing leaves from the
+ * end, e.g. at a reorganisation of the chain, is O(1) since nodes never depend on later leaves. Not thread safe.
+ *
+ * @see MerkleAccumulator
+ * @see MerkleProof
+ */
+public class MerkleMountainRange {
+    private static final int DIGEST = HashEngine.DIGEST_LENGTH;
+
+    private final HashAlgorithm algorithm;
+    // level h holds the roots of the perfect subtrees of height h, node k at [k * 32]
+    private final byte[][] levels = new byte[32][];
+    private final byte[] buffer = new byte[2 * DIGEST];
+    private int size;
+    private MerkleRoot root;
+
+    public MerkleMountainRange() {
+        this(HashAlgorithm.getDefault());
+    }
+
+    /**
+     * @param algorithm digest algorithm of the ledger
+     */
+    public MerkleMountainRange(HashAlgorithm algorithm) {
+        this.algorithm = algorithm;
+        levels[0] = new byte[16 * DIGEST];
+    }
+
+    /**
+     * Append a leaf
+     *
+     * @param leaf digest of the leaf, e.g. a block ID
+     */
+    public void add(Hash leaf) {
+        if (size == Integer.MAX_VALUE) {
+            throw new IllegalStateException("Merkle Tree is full");
+        }
+        leaf.copyTo(ensureCapacity(0, size), size * DIGEST);
+        size++;
+        // a node of height h + 1 completes for each trailing zero bit of the new size
+        for (int height = 0; ((size >> height) & 1) == 0; height++) {
+            int k = (size >> (height + 1)) - 1;
+            byte[] level = levels[height];
+            HashEngine.merge(algorithm, level, 2 * k * DIGEST, level, (2 * k + 1) * DIGEST,
+                    ensureCapacity(height + 1, k), k * DIGEST);
+        }
+        root = null;
+    }
+
+    /**
+     * Remove leaves from the end
+     *
+     * @param size number of leaves to keep
+     * @throws IllegalArgumentException if size is negative or larger than the current size
+     */
+    public void truncate(int size) {
+        if (size < 0 || size > this.size) {
+            throw new IllegalArgumentException("Can not truncate " + this.size + " leaves to " + size);
+        }
+        if (size != this.size) {
+            // nodes of the remaining perfect subtrees are still valid, the rest is overwritten by later leaves
+            this.size = size;
+            root = null;
+        }
+    }
+
+    /**
+     * @return number of leaves
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param index position of a leaf
+     * @return the leaf
+     */
+    public Hash getLeaf(int index) {
+        checkIndex(index);
+        return Hash.createFromArray(levels[0], index * DIGEST);
+    }
+
+    /**
+     * Tests a leaf without creating a Hash
+     *
+     * @param index position of a leaf
+     * @param leaf  a digest
+     * @return true if the leaf at index is equal to leaf
+     */
+    public boolean isLeaf(int index, Hash leaf) {
+        checkIndex(index);
+        leaf.copyTo(buffer, 0);
+        for (int i = 0, offset = index * DIGEST; i < DIGEST; i++) {
+            if (buffer[i] != levels[0][offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return Merkle root of all leaves
+     * @throws IllegalStateException if there are no leaves
+     */
+    public MerkleRoot getRoot() {
+        if (size == 0) {
+            throw new IllegalStateException("Merkle root of an empty list is undefined");
+        }
+        if (root == null) {
+            int height = 32 - Integer.numberOfLeadingZeros(size - 1);
+            if (size == 1 << height) {
+                root = new MerkleRoot(Hash.createFromArray(levels[height], 0));
+            } else {
+                root = new MerkleRoot(partial(height));
+            }
+        }
+        return root;
+    }
+
+    /**
+     * Create the proof of a leaf, O(log n) merges
+     *
+     * @param index position of the leaf
+     * @return proof of the leaf against the current root
+     */
+    public MerkleProof createProof(int index) {
+        checkIndex(index);
+        List<Hash> siblings = new ArrayList<>();
+        // the same walk as MerkleProof: level h has (size + 2^h - 1) >> h nodes of which size >> h are perfect
+        for (int height = 0, count = size; count > 1; height++, count = (count + 1) / 2) {
+            int sibling = (index >> height) ^ 1;
+            if (sibling >= count) {
+                continue;
+            }
+            if (sibling < size >> height) {
+                siblings.add(Hash.createFromArray(levels[height], sibling * DIGEST));
+            } else {
+                siblings.add(partial(height));
+            }
+        }
+        return new MerkleProof(index, size, siblings, algorithm);
+    }
+
+    // the last node of level height that is not a perfect subtree: the peaks below height folded like
+    // MerkleTree.computeMerkleRoot does, that is the lower node merged with itself up to the height of the next
+    private Hash partial(int height) {
+        int h = Integer.numberOfTrailingZeros(size);
+        System.arraycopy(levels[h], ((size >> h) - 1) * DIGEST, buffer, DIGEST, DIGEST);
+        for (int next = h + 1; next < height; next++) {
+            if (((size >> next) & 1) == 0) {
+                continue;
+            }
+            for (; h < next; h++) {
+                HashEngine.merge(algorithm, buffer, DIGEST, buffer, DIGEST, buffer, DIGEST);
+            }
+            System.arraycopy(levels[next], ((size >> next) - 1) * DIGEST, buffer, 0, DIGEST);
+            HashEngine.merge(algorithm, buffer, 0, buffer, DIGEST, buffer, DIGEST);
+            h = next + 1;
+        }
+        for (; h < height; h++) {
+            HashEngine.merge(algorithm, buffer, DIGEST, buffer, DIGEST, buffer, DIGEST);
+        }
+        return Hash.createFromArray(buffer, DIGEST);
+    }
+
+    private byte[] ensureCapacity(int height, int index) {
+        byte[] level = levels[height];
+        if (level == null) {
+            level = levels[height] = new byte[Math.max(4, (index + 1)) * DIGEST];
+        } else if (level.length < (index + 1) * DIGEST) {
+            level = levels[height] = Arrays.copyOf(level, (int) Math.min(Integer.MAX_VALUE - 8,
+                    Math.max(2L * level.length, (index + 1L) * DIGEST)));
+        }
+        return level;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Leaf index " + index + " is not within " + size + " leaves");
+        }
+    }
+}
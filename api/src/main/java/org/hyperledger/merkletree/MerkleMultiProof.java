@@ -0,0 +1,252 @@
+/**
+ * Copyright 2016 Digital Asset Holdings, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.merkletree;
+
+import org.hyperledger.common.Hash;
+import org.hyperledger.common.HashAlgorithm;
+import org.hyperledger.common.HashEngine;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Proof that a set of leaves, e.g. transactions of a block, is included in a Merkle Tree with a given root.
+ * <p>
+ * The proof is the tree compressed around the proven leaves: every other subtree is a PrunedNode of its height,
+ * exactly as MerkleTree.compact leaves it, so siblings shared by the paths of several leaves are stored once.
+ * Verification computes each merge of the tree above the stored nodes once, that is the minimum needed.
+ * <p>
+ * Binary form: format version, algorithm version and node count as unsigned varints, followed by a byte and a
+ * 32 byte digest per node in tree order. The byte is the Merkle height, 0x80 is added for a proven leaf.
+ *
+ * @see MerkleTree#compact(List, HashAlgorithm)
+ * @see MerkleProof
+ */
+public class MerkleMultiProof {
+    private static final int FORMAT_VERSION = 1;
+    private static final int DIGEST = HashEngine.DIGEST_LENGTH;
+    private static final int LEAF_FLAG = 0x80;
+
+    private final List<MerkleTreeNode> nodes;
+    private final HashAlgorithm algorithm;
+
+    /**
+     * @param nodes     proven leaves and pruned nodes in tree order
+     * @param algorithm digest algorithm of the tree
+     */
+    private MerkleMultiProof(List<MerkleTreeNode> nodes, HashAlgorithm algorithm) {
+        this.nodes = Collections.unmodifiableList(nodes);
+        this.algorithm = algorithm;
+    }
+
+    /**
+     * Create the proof of some leaves of a list, with the default algorithm
+     *
+     * @param nodes  nodes of the tree, e.g. of a block, that may already be pruned
+     * @param leaves IDs of the leaves to prove
+     * @return proof of the leaves
+     * @throws IllegalArgumentException if a leaf is not among the nodes
+     */
+    public static MerkleMultiProof create(List<? extends MerkleTreeNode> nodes, Collection<? extends Hash> leaves) {
+        return create(nodes, leaves, HashAlgorithm.getDefault());
+    }
+
+    /**
+     * Create the proof of some leaves of a list
+     *
+     * @param nodes     nodes of the tree, e.g. of a block, that may already be pruned
+     * @param leaves    IDs of the leaves to prove
+     * @param algorithm digest algorithm of the tree
+     * @return proof of the leaves
+     * @throws IllegalArgumentException if a leaf is not among the nodes
+     */
+    public static MerkleMultiProof create(List<? extends MerkleTreeNode> nodes, Collection<? extends Hash> leaves,
+                                          HashAlgorithm algorithm) {
+        Set<Hash> wanted = new HashSet<>(leaves);
+        Set<Hash> found = new HashSet<>();
+        List<MerkleTreeNode> tree = new ArrayList<>(nodes.size());
+        for (MerkleTreeNode node : nodes) {
+            if (node.getMerkleHeight() == 0 && wanted.contains(node.getID()) && found.add(node.getID())) {
+                tree.add(new Leaf(node.getID()));
+            } else if (node instanceof PrunedNode) {
+                tree.add(node);
+            } else {
+                tree.add(new PrunedNode(node.getID(), node.getMerkleHeight()));
+            }
+        }
+        if (found.size() != wanted.size()) {
+            wanted.removeAll(found);
+            throw new IllegalArgumentException("Leaves " + wanted + " are not in the tree");
+        }
+        return new MerkleMultiProof(MerkleTree.compact(tree, algorithm), algorithm);
+    }
+
+    /**
+     * Verify that leaves are included in a tree
+     *
+     * @param leaves the leaves, e.g. transaction IDs
+     * @param proof  proof of the leaves
+     * @param root   expected root, e.g. of a block header
+     * @return true if every leaf is proven and the proof leads to root
+     */
+    public static boolean verify(Collection<? extends Hash> leaves, MerkleMultiProof proof, MerkleRoot root) {
+        return new HashSet<>(proof.getLeaves()).containsAll(leaves) && root.equals(proof.computeRoot());
+    }
+
+    /**
+     * Merkle root of a tree that contains the proven leaves, one merge for each node of the tree above the
+     * stored nodes
+     *
+     * @return root of the tree
+     */
+    public MerkleRoot computeRoot() {
+        return MerkleTree.computePrunedMerkleRoot(nodes, algorithm);
+    }
+
+    /**
+     * @return proven leaves and pruned nodes in tree order
+     */
+    public List<MerkleTreeNode> getNodes() {
+        return nodes;
+    }
+
+    /**
+     * @return IDs of the proven leaves in tree order
+     */
+    public List<Hash> getLeaves() {
+        List<Hash> leaves = new ArrayList<>();
+        for (MerkleTreeNode node : nodes) {
+            if (node instanceof Leaf) {
+                leaves.add(node.getID());
+            }
+        }
+        return leaves;
+    }
+
+    /**
+     * @return digest algorithm of the tree
+     */
+    public HashAlgorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * @return compact binary form of the proof
+     */
+    public byte[] toByteArray() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(8 + nodes.size() * (DIGEST + 1));
+        MerkleProof.writeVarInt(FORMAT_VERSION, out);
+        MerkleProof.writeVarInt(algorithm.getVersion(), out);
+        MerkleProof.writeVarInt(nodes.size(), out);
+        byte[] digest = new byte[DIGEST];
+        for (MerkleTreeNode node : nodes) {
+            out.write(node.getMerkleHeight() | (node instanceof Leaf ? LEAF_FLAG : 0));
+            node.getID().copyTo(digest, 0);
+            out.write(digest, 0, DIGEST);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * @param data binary form of a proof
+     * @return the proof
+     * @throws IOException if data is not a valid proof
+     */
+    public static MerkleMultiProof fromByteArray(byte[] data) throws IOException {
+        int[] position = {0};
+        int format = MerkleProof.readVarInt(data, position);
+        if (format != FORMAT_VERSION) {
+            throw new IOException("Unknown Merkle proof format " + format);
+        }
+        HashAlgorithm algorithm;
+        try {
+            algorithm = HashAlgorithm.fromVersion(MerkleProof.readVarInt(data, position));
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        int n = MerkleProof.readVarInt(data, position);
+        if (n == 0 || (long) n * (DIGEST + 1) != data.length - position[0]) {
+            throw new IOException("Merkle proof of " + n + " nodes does not match its length");
+        }
+        List<MerkleTreeNode> nodes = new ArrayList<>(n);
+        for (int i = 0, offset = position[0]; i < n; i++, offset += DIGEST + 1) {
+            int height = data[offset] & 0xff;
+            Hash digest = Hash.createFromArray(data, offset + 1);
+            if ((height & LEAF_FLAG) != 0) {
+                if (height != LEAF_FLAG) {
+                    throw new IOException("Proven leaf at Merkle height " + (height & ~LEAF_FLAG));
+                }
+                nodes.add(new Leaf(digest));
+            } else if (height > 31) {
+                throw new IOException("Merkle height " + height + " out of range");
+            } else {
+                nodes.add(new PrunedNode(digest, height));
+            }
+        }
+        return new MerkleMultiProof(nodes, algorithm);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        MerkleMultiProof that = (MerkleMultiProof) o;
+
+        if (algorithm != that.algorithm || nodes.size() != that.nodes.size()) return false;
+        for (int i = 0; i < nodes.size(); i++) {
+            MerkleTreeNode a = nodes.get(i), b = that.nodes.get(i);
+            if (a.getClass() != b.getClass() || a.getMerkleHeight() != b.getMerkleHeight() || !a.getID().equals(b.getID())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = 0;
+        for (MerkleTreeNode node : nodes) {
+            result = 31 * result + node.getID().hashCode();
+        }
+        return result;
+    }
+
+    // a proven leaf, not a PrunedNode so compact keeps it
+    private static class Leaf implements MerkleTreeNode {
+        private final Hash id;
+
+        Leaf(Hash id) {
+            this.id = id;
+        }
+
+        @Override
+        public Hash getID() {
+            return id;
+        }
+
+        @Override
+        public int getMerkleHeight() {
+            return 0;
+        }
+    }
+}
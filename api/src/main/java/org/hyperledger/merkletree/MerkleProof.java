@@ -0,0 +1,290 @@
+/**
+ * Copyright 2016 Digital Asset Holdings, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.merkletree;
+
+import org.hyperledger.common.Hash;
+import org.hyperledger.common.HashAlgorithm;
+import org.hyperledger.common.HashEngine;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Proof that a leaf, e.g. a transaction, is included in a Merkle Tree with a given root, without the other leaves.
+ * <p>
+ * The proof holds the position of the leaf, the number of leaves and the siblings on the path from the leaf to
+ * the root, that is O(log n) digests. Where the path passes the last node of an odd level that node is merged
+ * with itself, so no sibling is stored for it.
+ * <p>
+ * Binary form: format version, algorithm version, leaf count and index as unsigned varints, followed by the
+ * 32 byte siblings in bottom up order. The number of siblings follows from leaf count and index.
+ *
+ * @see MerkleTree
+ */
+public class MerkleProof {
+    private static final int FORMAT_VERSION = 1;
+    private static final int DIGEST = HashEngine.DIGEST_LENGTH;
+
+    private final int index;
+    private final int leafCount;
+    private final List<Hash> siblings;
+    private final HashAlgorithm algorithm;
+
+    /**
+     * @param index     position of the proven leaf
+     * @param leafCount number of leaves of the tree
+     * @param siblings  siblings on the path from the leaf to the root, bottom up, except self-merges
+     * @param algorithm digest algorithm of the tree
+     */
+    public MerkleProof(int index, int leafCount, List<Hash> siblings, HashAlgorithm algorithm) {
+        if (leafCount <= 0 || index < 0 || index >= leafCount) {
+            throw new IllegalArgumentException("Leaf index " + index + " is not within " + leafCount + " leaves");
+        }
+        if (siblings.size() != siblingCount(index, leafCount)) {
+            throw new IllegalArgumentException("Proof of leaf " + index + " of " + leafCount + " needs "
+                    + siblingCount(index, leafCount) + " siblings");
+        }
+        this.index = index;
+        this.leafCount = leafCount;
+        this.siblings = Collections.unmodifiableList(new ArrayList<>(siblings));
+        this.algorithm = algorithm;
+    }
+
+    /**
+     * Create the proof of a node of a list, with the default algorithm
+     *
+     * @param nodes leaves of the tree, e.g. transactions of a block
+     * @param index position of the node to prove
+     * @return proof of nodes[index]
+     */
+    public static MerkleProof create(List<? extends MerkleTreeNode> nodes, int index) {
+        return create(MerkleEngine.pack(nodes), nodes.size(), index, HashAlgorithm.getDefault());
+    }
+
+    /**
+     * Create the proof of a leaf from packed leaf digests
+     *
+     * @param leaves    leaf digests, 32 bytes each, not modified
+     * @param count     number of leaves
+     * @param index     position of the leaf to prove
+     * @param algorithm digest algorithm of the tree
+     * @return proof of the leaf at index
+     */
+    public static MerkleProof create(byte[] leaves, int count, int index, HashAlgorithm algorithm) {
+        if (count <= 0 || index < 0 || index >= count || (long) count * DIGEST > leaves.length) {
+            throw new IllegalArgumentException("Leaf index " + index + " is not within " + count + " leaves");
+        }
+        List<Hash> siblings = new ArrayList<>();
+        byte[] level = new byte[(count + 1) / 2 * DIGEST + DIGEST];
+        byte[] source = leaves;
+        int leafCount = count;
+        int position = index;
+        // reduce the tree level by level and collect the sibling on the path on each level
+        while (count > 1) {
+            int sibling = position ^ 1;
+            if (sibling < count) {
+                siblings.add(Hash.createFromArray(source, sibling * DIGEST));
+            }
+            int pairs = count / 2;
+            HashEngine.mergeAll(algorithm, source, 0, level, 0, pairs);
+            if ((count & 1) == 1) {
+                int last = (count - 1) * DIGEST;
+                HashEngine.merge(algorithm, source, last, source, last, level, pairs * DIGEST);
+            }
+            source = level;
+            count = (count + 1) / 2;
+            position /= 2;
+        }
+        return new MerkleProof(index, leafCount, siblings, algorithm);
+    }
+
+    /**
+     * @param index     position of a leaf
+     * @param leafCount number of leaves
+     * @return number of siblings stored in a proof of the leaf
+     */
+    static int siblingCount(int index, int leafCount) {
+        int n = 0;
+        for (int count = leafCount, position = index; count > 1; count = (count + 1) / 2, position /= 2) {
+            if ((position ^ 1) < count) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Verify that a leaf is included in a tree
+     *
+     * @param leaf  the leaf, e.g. a transaction ID
+     * @param proof proof of the leaf
+     * @param root  expected root, e.g. of a block header
+     * @return true if the proof leads from leaf to root
+     */
+    public static boolean verify(Hash leaf, MerkleProof proof, MerkleRoot root) {
+        return root.equals(proof.computeRoot(leaf));
+    }
+
+    /**
+     * Merkle root of a tree that contains leaf as proven, O(log n) merges
+     *
+     * @param leaf the leaf, e.g. a transaction ID
+     * @return root of the tree
+     */
+    public MerkleRoot computeRoot(Hash leaf) {
+        byte[] buffer = new byte[2 * DIGEST];
+        leaf.copyTo(buffer, 0);
+        int next = 0;
+        for (int count = leafCount, position = index; count > 1; count = (count + 1) / 2, position /= 2) {
+            int sibling = position ^ 1;
+            if (sibling >= count) {
+                // last node of an odd level
+                HashEngine.merge(algorithm, buffer, 0, buffer, 0, buffer, 0);
+            } else if ((position & 1) == 0) {
+                siblings.get(next++).copyTo(buffer, DIGEST);
+                HashEngine.merge(algorithm, buffer, 0, buffer, DIGEST, buffer, 0);
+            } else {
+                System.arraycopy(buffer, 0, buffer, DIGEST, DIGEST);
+                siblings.get(next++).copyTo(buffer, 0);
+                HashEngine.merge(algorithm, buffer, 0, buffer, DIGEST, buffer, 0);
+            }
+        }
+        return new MerkleRoot(Hash.createFromArray(buffer, 0));
+    }
+
+    /**
+     * @return position of the proven leaf
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * @return number of leaves of the tree
+     */
+    public int getLeafCount() {
+        return leafCount;
+    }
+
+    /**
+     * @return siblings on the path from the leaf to the root, bottom up
+     */
+    public List<Hash> getSiblings() {
+        return siblings;
+    }
+
+    /**
+     * @return digest algorithm of the tree
+     */
+    public HashAlgorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * @return compact binary form of the proof
+     */
+    public byte[] toByteArray() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(8 + siblings.size() * DIGEST);
+        writeVarInt(FORMAT_VERSION, out);
+        writeVarInt(algorithm.getVersion(), out);
+        writeVarInt(leafCount, out);
+        writeVarInt(index, out);
+        byte[] digest = new byte[DIGEST];
+        for (Hash sibling : siblings) {
+            sibling.copyTo(digest, 0);
+            out.write(digest, 0, DIGEST);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * @param data binary form of a proof
+     * @return the proof
+     * @throws IOException if data is not a valid proof
+     */
+    public static MerkleProof fromByteArray(byte[] data) throws IOException {
+        int[] position = {0};
+        int format = readVarInt(data, position);
+        if (format != FORMAT_VERSION) {
+            throw new IOException("Unknown Merkle proof format " + format);
+        }
+        HashAlgorithm algorithm;
+        try {
+            algorithm = HashAlgorithm.fromVersion(readVarInt(data, position));
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        int leafCount = readVarInt(data, position);
+        int index = readVarInt(data, position);
+        if (leafCount <= 0 || index >= leafCount) {
+            throw new IOException("Leaf index " + index + " is not within " + leafCount + " leaves");
+        }
+        int n = siblingCount(index, leafCount);
+        if (data.length - position[0] != n * DIGEST) {
+            throw new IOException("Merkle proof of leaf " + index + " of " + leafCount + " needs " + n + " siblings");
+        }
+        List<Hash> siblings = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            siblings.add(Hash.createFromArray(data, position[0] + i * DIGEST));
+        }
+        return new MerkleProof(index, leafCount, siblings, algorithm);
+    }
+
+    static void writeVarInt(int value, ByteArrayOutputStream out) {
+        while ((value & ~0x7f) != 0) {
+            out.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    static int readVarInt(byte[] data, int[] position) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            if (position[0] >= data.length) {
+                throw new IOException("Truncated Merkle proof");
+            }
+            int b = data[position[0]++];
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                if (value < 0) {
+                    throw new IOException("Varint out of range");
+                }
+                return value;
+            }
+        }
+        throw new IOException("Varint too long");
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        MerkleProof that = (MerkleProof) o;
+
+        return index == that.index && leafCount == that.leafCount && algorithm == that.algorithm
+                && siblings.equals(that.siblings);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * index + leafCount) + siblings.hashCode();
+    }
+}
@@ -21,7 +21,7 @@ public class MerkleRoot extends Hash {
     public static final MerkleRoot INVALID = new MerkleRoot(new byte[32]);
 
     public MerkleRoot(Hash hash) {
-        super(hash.unsafeGetArray());
+        super(hash);
     }
 
     public MerkleRoot(byte[] hash) {
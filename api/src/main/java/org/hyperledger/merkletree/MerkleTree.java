@@ -16,6 +16,8 @@
 package org.hyperledger.merkletree;
 
 import org.hyperledger.common.Hash;
+import org.hyperledger.common.HashAlgorithm;
+import org.hyperledger.common.HashEngine;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -33,13 +35,19 @@ public class MerkleTree {
      * @return root digest
      */
     public static MerkleRoot computeMerkleRoot(List<? extends MerkleTreeNode> nodes) {
-        List<MerkleTreeNode> merkleTreeNodeList = new ArrayList<>(nodes.size());
-        for (MerkleTreeNode n : nodes) {
-            merkleTreeNodeList.add(new PrunedNode(n.getID(), 0));
-        }
+        return computeMerkleRoot(nodes, HashAlgorithm.getDefault());
+    }
 
-        MerkleTreeNode rootNode = compress(merkleTreeNodeList).get(0);
-        return new MerkleRoot(rootNode.getID());
+    /**
+     * Digest a list of nodes into a single root digest
+     *
+     * @param nodes     list of nodes to compress
+     * @param algorithm digest algorithm of the ledger
+     * @return root digest
+     */
+    public static MerkleRoot computeMerkleRoot(List<? extends MerkleTreeNode> nodes, HashAlgorithm algorithm) {
+        // every node is a leaf of the tree, an odd last node of a level is merged with itself
+        return MerkleEngine.computeRoot(MerkleEngine.pack(nodes), nodes.size(), algorithm);
     }
 
     /**
@@ -51,6 +59,19 @@ public class MerkleTree {
      * @see PrunedNode
      */
     public static List<MerkleTreeNode> compress(List<MerkleTreeNode> nodes) {
+        return compress(nodes, HashAlgorithm.getDefault());
+    }
+
+    /**
+     * Compress a merkle tree into the smallest possible representation that
+     * does not lose information on nodes that are not instances of PrunedNode
+     *
+     * @param nodes     list of nodes to compress
+     * @param algorithm digest algorithm of the ledger
+     * @return root digest
+     * @see PrunedNode
+     */
+    public static List<MerkleTreeNode> compress(List<MerkleTreeNode> nodes, HashAlgorithm algorithm) {
         List<MerkleTreeNode> result = new ArrayList<>(nodes);
         boolean hasChanged;
         do {
@@ -74,13 +95,13 @@ public class MerkleTree {
 
                 if (isMergeableDistantPrunedNeighbours(left, leftPos, right, rightPos)) {
                     result.add(new PrunedNode(
-                            Hash.merge(left.getID(), mergeWithItself(right, left.getMerkleHeight() - right.getMerkleHeight())),
+                            Hash.merge(left.getID(), mergeWithItself(right, left.getMerkleHeight() - right.getMerkleHeight(), algorithm), algorithm),
                             left.getMerkleHeight() + 1));
                     hasChanged = true;
                     i++;
                 } else if (isNeighbours(left, leftPos, right, rightPos)) {
                     if (left instanceof PrunedNode && right instanceof PrunedNode) {
-                        result.add(new PrunedNode(Hash.merge(left.getID(), right.getID()), left.getMerkleHeight() + 1));
+                        result.add(new PrunedNode(Hash.merge(left.getID(), right.getID(), algorithm), left.getMerkleHeight() + 1));
                         prevPos = rightPos;
                         hasChanged = true;
                         i++;
@@ -99,12 +120,141 @@ public class MerkleTree {
         return result;
     }
 
-    private static Hash mergeWithItself(MerkleTreeNode left, int count) {
-        Hash hash = left.getID();
+    /**
+     * Compress a list of leaves and pruned nodes into the fewest nodes that keep the leaves that are not
+     * instances of PrunedNode. Unlike compress, the position of every node follows from the Merkle heights
+     * of the nodes before it, as computePrunedMerkleRoot reads them, so the result has the same root.
+     *
+     * @param nodes     leaves and pruned nodes in tree order
+     * @param algorithm digest algorithm of the ledger
+     * @return compressed nodes in tree order
+     * @throws IllegalArgumentException if a node is not at a position of its height
+     * @see #computePrunedMerkleRoot(List, HashAlgorithm)
+     */
+    public static List<MerkleTreeNode> compact(List<? extends MerkleTreeNode> nodes, HashAlgorithm algorithm) {
+        List<MerkleTreeNode> result = new ArrayList<>(nodes.size());
+        // leaf position of each node of result
+        long[] positions = new long[nodes.size()];
+        long position = 0;
+        for (MerkleTreeNode node : nodes) {
+            int height = node.getMerkleHeight();
+            if (height < 0 || height > 31 || (position & ((1L << height) - 1)) != 0) {
+                throw new IllegalArgumentException("Merkle tree node of height " + height + " at leaf position " + position);
+            }
+            positions[result.size()] = position;
+            result.add(node);
+            position += 1L << height;
+            while (mergeLast(result, positions, false, algorithm)) {
+                // merge complete pairs of pruned siblings
+            }
+        }
+        while (mergeLast(result, positions, true, algorithm)) {
+            // the last node is alone in its subtree, so it is merged with itself up to its left neighbour
+        }
+        return result;
+    }
+
+    /**
+     * Compress a list of leaves and pruned nodes with the default algorithm, see compact
+     *
+     * @param nodes leaves and pruned nodes in tree order
+     * @return compressed nodes in tree order
+     */
+    public static List<MerkleTreeNode> compact(List<? extends MerkleTreeNode> nodes) {
+        return compact(nodes, HashAlgorithm.getDefault());
+    }
+
+    // Replaces the last two nodes of a compact list with their parent if both are pruned and the left one starts
+    // its parent. With last, the right one may be lower since it is the last node of the tree.
+    private static boolean mergeLast(List<MerkleTreeNode> nodes, long[] positions, boolean last, HashAlgorithm algorithm) {
+        int n = nodes.size();
+        if (n < 2) {
+            return false;
+        }
+        MerkleTreeNode left = nodes.get(n - 2), right = nodes.get(n - 1);
+        int height = left.getMerkleHeight();
+        if (!(left instanceof PrunedNode && right instanceof PrunedNode) ||
+                (last ? right.getMerkleHeight() > height : right.getMerkleHeight() != height) ||
+                (positions[n - 2] >> height & 1) != 0) {
+            return false;
+        }
+        nodes.remove(n - 1);
+        nodes.set(n - 2, new PrunedNode(Hash.merge(left.getID(),
+                mergeWithItself(right, height - right.getMerkleHeight(), algorithm), algorithm), height + 1));
+        return true;
+    }
+
+    /**
+     * Digest a list of nodes that may be pruned into the root digest of the full tree.
+     * Unlike computeMerkleRoot, every node stands for the subtree of its Merkle height, as produced by compact.
+     * Each merge of the tree not yet represented by a node is computed once.
+     *
+     * @param nodes     leaves and pruned nodes in tree order
+     * @param algorithm digest algorithm of the ledger
+     * @return root digest
+     * @throws IllegalArgumentException if the list is empty or a node is not at a position of its height
+     * @see #compact(List, HashAlgorithm)
+     */
+    public static MerkleRoot computePrunedMerkleRoot(List<? extends MerkleTreeNode> nodes, HashAlgorithm algorithm) {
+        if (nodes.isEmpty()) {
+            throw new IllegalArgumentException("Merkle root of an empty list is undefined");
+        }
+        // complete subtrees of strictly decreasing height, like the frontier of a MerkleAccumulator
+        Hash[] stack = new Hash[33];
+        int[] heights = new int[33];
+        int size = 0;
+        long position = 0;
+        for (MerkleTreeNode node : nodes) {
+            int height = node.getMerkleHeight();
+            if (height < 0 || height > 31 || (position & ((1L << height) - 1)) != 0) {
+                throw new IllegalArgumentException("Merkle tree node of height " + height + " at leaf position " + position);
+            }
+            position += 1L << height;
+            Hash hash = node.getID();
+            while (size > 0 && heights[size - 1] == height) {
+                hash = Hash.merge(stack[--size], hash, algorithm);
+                height++;
+            }
+            if (size > 0 && heights[size - 1] < height) {
+                throw new IllegalArgumentException("Merkle tree node of height " + node.getMerkleHeight() + " does not complete its subtree");
+            }
+            stack[size] = hash;
+            heights[size++] = height;
+        }
+        // the rightmost nodes are the last of their levels, so they are merged with themselves up to their left neighbour
+        Hash hash = stack[--size];
+        int height = heights[size];
+        while (size > 0) {
+            --size;
+            hash = Hash.merge(stack[size], mergeWithItself(hash, heights[size] - height, algorithm), algorithm);
+            height = heights[size] + 1;
+        }
+        return new MerkleRoot(hash);
+    }
+
+    /**
+     * Digest a list of nodes that may be pruned with the default algorithm, see computePrunedMerkleRoot
+     *
+     * @param nodes leaves and pruned nodes in tree order
+     * @return root digest
+     */
+    public static MerkleRoot computePrunedMerkleRoot(List<? extends MerkleTreeNode> nodes) {
+        return computePrunedMerkleRoot(nodes, HashAlgorithm.getDefault());
+    }
+
+    private static Hash mergeWithItself(MerkleTreeNode left, int count, HashAlgorithm algorithm) {
+        return mergeWithItself(left.getID(), count, algorithm);
+    }
+
+    private static Hash mergeWithItself(Hash left, int count, HashAlgorithm algorithm) {
+        if (count == 0) {
+            return left;
+        }
+        byte[] hash = left.toByteArray();
         for (int i = 0; i < count; i++) {
-            hash = Hash.merge(hash, hash);
+            HashEngine.merge(algorithm, hash, 0, hash, 0, hash, 0);
         }
-        return hash;
+        return Hash.createFromSafeArray(hash);
     }
 
 
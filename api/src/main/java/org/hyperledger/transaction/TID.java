@@ -32,7 +32,7 @@ public class TID extends Hash {
     public static final TID BITCOIN_NATIVE = new TID(new byte[]{0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1});
 
     public TID(Hash hash) {
-        super(hash.unsafeGetArray());
+        super(hash);
     }
 
     public TID(byte[] hash) {
@@ -53,4 +53,22 @@ public class TID extends Hash {
         }
         return new TID(hash, true);
     }
+
+    private TID(byte[] digests, int offset) {
+        super(digests, offset);
+    }
+
+    /**
+     * Create a TID of a digest stored at an offset of a larger array, e.g. a serialized transaction
+     *
+     * @param digests array holding the digest
+     * @param offset  first byte of the digest
+     * @return a new TID with the digest
+     */
+    public static TID createFromArray(byte[] digests, int offset) {
+        if (offset < 0 || offset + 32 > digests.length) {
+            throw new IllegalArgumentException("Digest length must be 32 bytes for Hash");
+        }
+        return new TID(digests, offset);
+    }
 }
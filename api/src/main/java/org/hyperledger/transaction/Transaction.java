@@ -15,38 +15,129 @@
  */
 package org.hyperledger.transaction;
 
-import org.hyperledger.common.AvroSerializer;
 import org.hyperledger.common.Hash;
+import org.hyperledger.common.HashPool;
 import org.hyperledger.common.PublicKey;
 import org.hyperledger.merkletree.MerkleTreeNode;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.function.Function;
 
 public class Transaction implements MerkleTreeNode {
-    private static final Logger log = LoggerFactory.getLogger(Transaction.class);
+    /**
+     * encoding of SerializedTransaction, see transaction.avsc
+     */
+    public static final int VERSION_1 = TransactionCodec.V1;
+    /**
+     * encoding of SerializedTransactionV2 after a tag byte, see transaction_v2.avsc. Inputs are stored without a
+     * length, which saves a byte per input and their decoding is cheaper.
+     */
+    public static final int VERSION_2 = TransactionCodec.V2;
 
     private final TID ID;
-    private final List<TID> inputs;
-    private final List<byte[]> outputs;
-    private final List<Endorser> endorsers;
+    // canonical serialized form, the ID is its digest
+    private final byte[] bytes;
+    // source of the content if it is backed by the serialized form, otherwise null
+    private final TransactionView view;
+    private final HashPool<TID> pool;
+    private volatile Content content;
+
+    private static final class Content {
+        private final List<TID> inputs;
+        private final List<Endorser> endorsers;
+        // outputs as encoded if compressed, otherwise null
+        private final List<byte[]> packed;
+        // decompressed on first access if packed
+        private volatile List<byte[]> outputs;
+
+        private Content(List<TID> inputs, List<byte[]> outputs, List<byte[]> packed, List<Endorser> endorsers) {
+            this.inputs = inputs;
+            this.outputs = outputs;
+            this.packed = packed;
+            this.endorsers = endorsers;
+        }
+    }
 
     public Transaction(List<TID> inputs, List<byte[]> outputs, List<Endorser> endorsers) {
-        this.inputs = inputs;
-        this.outputs = outputs;
-        this.endorsers = endorsers;
-        this.ID = new TID(Hash.of(toByteArray()));
+        this(inputs, outputs, endorsers, VERSION_1);
+    }
+
+    /**
+     * Create a transaction serialized in a given version. The ID is the digest of the serialized form, so it
+     * depends on the version.
+     *
+     * @param version VERSION_1 or VERSION_2
+     * @throws IllegalArgumentException if the version is unknown
+     */
+    public Transaction(List<TID> inputs, List<byte[]> outputs, List<Endorser> endorsers, int version) {
+        this.content = new Content(inputs, outputs, null, endorsers);
+        this.bytes = TransactionCodec.encode(version, inputs, outputs, endorsers);
+        this.ID = new TID(Hash.of(bytes));
+        this.view = null;
+        this.pool = null;
+    }
+
+    // outputs of at least threshold bytes compressed, see TransactionBuilder.compressOutputs
+    Transaction(List<TID> inputs, List<byte[]> outputs, List<Endorser> endorsers, int version, int threshold) {
+        List<byte[]> packed = TransactionCodec.pack(outputs, threshold);
+        this.content = new Content(inputs, outputs, packed, endorsers);
+        this.bytes = TransactionCodec.encode(version, true, inputs, packed, endorsers);
+        this.ID = new TID(Hash.of(bytes));
+        this.view = null;
+        this.pool = null;
+    }
+
+    // content and its encoding prepared by the caller, packed is null if outputs are not compressed
+    Transaction(List<TID> inputs, List<byte[]> outputs, List<byte[]> packed, List<Endorser> endorsers, byte[] bytes, TID ID) {
+        this.content = new Content(inputs, outputs, packed, endorsers);
+        this.bytes = bytes;
+        this.ID = ID;
+        this.view = null;
+        this.pool = null;
+    }
+
+    // outputs encoded from where they are, the content is backed by the encoding, see TransactionBuilder.output
+    static Transaction ofBuffers(List<TID> inputs, List<ByteBuffer> outputs, List<Endorser> endorsers, int version) {
+        byte[] bytes = TransactionCodec.encodeBuffers(version, inputs, outputs, endorsers);
+        try {
+            return new Transaction(TransactionView.wrap(bytes), new TID(Hash.of(bytes)), null);
+        } catch (IOException e) {
+            throw new IllegalStateException("Transaction has no canonical encoding", e);
+        }
+    }
+
+    // content backed by the view, see wrapAll
+    private Transaction(TransactionView view, TID ID, HashPool<TID> pool) {
+        this.bytes = view.array();
+        this.ID = ID;
+        this.view = view;
+        this.pool = pool;
     }
 
     protected Transaction(Transaction t) {
-        inputs = t.inputs;
-        outputs = t.outputs;
-        endorsers = t.endorsers;
+        content = t.content;
+        bytes = t.bytes;
         ID = t.ID;
+        view = t.view;
+        pool = t.pool;
+    }
+
+    // Lists over the serialized form, so that the content costs a few objects instead of several per item. Inputs
+    // are copied into a list if they are interned.
+    private Content content() {
+        Content c = content;
+        if (c == null) {
+            List<TID> inputs = pool == null ? view.inputList() : Collections.unmodifiableList(view.getInputs(pool));
+            c = view.hasCompressedOutputs()
+                    ? new Content(inputs, null, view.outputList(), view.endorserList())
+                    : new Content(inputs, view.outputList(), null, view.endorserList());
+            content = c;
+        }
+        return c;
     }
 
     /**
@@ -62,16 +153,119 @@ public class Transaction implements MerkleTreeNode {
         return ID;
     }
 
+    /**
+     * The inputs of a deserialized transaction are read from its serialized form on first access. The list is
+     * read only, unlike the list a transaction is built from.
+     *
+     * @return the inputs
+     */
     public List<TID> getInputs() {
-        return inputs;
+        return content().inputs;
     }
 
+    /**
+     * The outputs of a deserialized transaction are copied from its serialized form on first access, later calls
+     * return the same arrays. The list is read only, unlike the list a transaction is built from.
+     *
+     * @return the outputs, decompressed on first call if compressed
+     * @throws IllegalStateException if a compressed output is corrupt
+     */
     public List<byte[]> getOutputs() {
+        Content c = content();
+        List<byte[]> outputs = c.outputs;
+        if (outputs == null) {
+            outputs = new ArrayList<>(c.packed.size());
+            for (byte[] packed : c.packed) {
+                try {
+                    outputs.add(TransactionCodec.unpack(packed));
+                } catch (IOException e) {
+                    throw new IllegalStateException("Corrupt compressed output of transaction " + ID, e);
+                }
+            }
+            outputs = Collections.unmodifiableList(outputs);
+            c.outputs = outputs;
+        }
         return outputs;
     }
 
+    /**
+     * The endorsers of a deserialized transaction are read from its serialized form on first access. The list is
+     * read only, unlike the list a transaction is built from.
+     *
+     * @return the endorsers
+     */
     public List<Endorser> getEndorsers() {
-        return endorsers;
+        return content().endorsers;
+    }
+
+    /**
+     * Estimate of the heap retained by this transaction, assuming a 64 bit JVM with compressed references.
+     * The content is only counted if it was decoded.
+     *
+     * @return estimated size in bytes
+     */
+    public long getRetainedSize() {
+        // transaction, ID and serialized form
+        long size = 32 + 48 + arraySize(bytes.length);
+        if (view != null) {
+            // view, its buffer and item offsets
+            size += 32 + 64 + 3 * 16 + 8L * (view.getInputCount() + view.getOutputCount() + view.getEndorserCount());
+        }
+        Content c = content;
+        if (c == null) {
+            return size;
+        }
+        size += 24;
+        if (view == null) {
+            size += listSize(c.inputs.size()) + (long) c.inputs.size() * 48;
+            size += outputsSize(c.outputs) + outputsSize(c.packed);
+            size += listSize(c.endorsers.size());
+            for (Endorser e : c.endorsers) {
+                size += 16 + arraySize(e.getSignature().length);
+            }
+            return size;
+        }
+        // lists over the view with a slot per item, items read not counted, inputs copied if interned, outputs
+        // decompressed
+        size += 3 * (24 + 16 + 16) + 4L * (view.getInputCount() + view.getOutputCount() + view.getEndorserCount());
+        size += pool == null ? 0 : listSize(c.inputs.size()) + 16;
+        return c.packed == null ? size : size + outputsSize(c.outputs);
+    }
+
+    private static long outputsSize(List<byte[]> outputs) {
+        if (outputs == null) {
+            return 0;
+        }
+        long size = listSize(outputs.size());
+        for (byte[] output : outputs) {
+            size += arraySize(output.length);
+        }
+        return size;
+    }
+
+    private static long listSize(int n) {
+        return 24 + arraySize(4 * n);
+    }
+
+    private static long arraySize(int n) {
+        return (16L + n + 7) & ~7;
+    }
+
+    /**
+     * Read only view of the serialized transaction, to read single inputs, outputs or signatures without
+     * decoding the others
+     *
+     * @return view of the bytes of this transaction
+     */
+    public TransactionView getView() {
+        if (view != null) {
+            return view;
+        }
+        try {
+            return TransactionView.wrap(bytes);
+        } catch (IOException e) {
+            throw new IllegalStateException("Transaction " + ID + " has no canonical encoding", e);
+        }
     }
 
     /**
@@ -79,7 +273,7 @@ public class Transaction implements MerkleTreeNode {
      * of the provided public key.
      */
     public boolean verify(Endorser endorser, PublicKey key) {
-        byte[] hash = Hash.of(outputs.get(0)).toByteArray();
+        byte[] hash = Hash.of(getOutputs().get(0)).toByteArray();
         return endorser.verify(hash, key);
     }
 
@@ -103,41 +297,150 @@ public class Transaction implements MerkleTreeNode {
         return "TID=" + ID.toString();
     }
 
+    /**
+     * The serialized transaction. writeTo, getSerializedSize and TransactionWriter all write what this returns.
+     *
+     * @return the serialized transaction, a copy of the form kept since construction
+     */
     public byte[] toByteArray() {
-        try {
-            return toByteArray(inputs, outputs, endorsers);
-        } catch (IOException e) {
-            log.error("Failed to serialize transaction {}: {}", ID, e.getMessage());
-            return new byte[0];
-        }
+        return bytes.clone();
     }
 
-    public static byte[] toByteArray(List<TID> inputs, List<byte[]> outputs, List<Endorser> endorsers) throws IOException {
-        List<ByteBuffer> inputBytes = AvroSerializer.toByteBufferList(inputs, TID::toByteArray);
-        List<ByteBuffer> outputBytes = AvroSerializer.toByteBufferList(outputs, Function.identity());
-        List<ByteBuffer> endorserBytes = AvroSerializer.toByteBufferList(endorsers, Endorser::getSignature);
+    /**
+     * Write the serialized transaction, e.g. to an encoding stream
+     *
+     * @param out stream to write to, not closed
+     * @throws IOException if out fails
+     * @see #toByteArray()
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(toByteArray());
+    }
 
-        SerializedTransaction t = SerializedTransaction.newBuilder()
-                .setInputs(inputBytes)
-                .setOutputs(outputBytes)
-                .setEndorsers(endorserBytes)
-                .build();
+    /**
+     * @return version of the serialized form, VERSION_1 or VERSION_2
+     */
+    public int getVersion() {
+        return TransactionCodec.version(bytes);
+    }
 
-        return AvroSerializer.serialize(t);
+    /**
+     * @return true if outputs are compressed in the serialized form
+     * @see TransactionBuilder#compressOutputs(int)
+     */
+    public boolean hasCompressedOutputs() {
+        return TransactionCodec.packed(bytes);
+    }
+
+    /**
+     * @return length of the serialized transaction, as returned by toByteArray
+     */
+    public int getSerializedSize() {
+        return toByteArray().length;
+    }
+
+    // content backed by the view
+    static Transaction wrap(TransactionView view) {
+        return new Transaction(view, view.getID(), null);
+    }
+
+    /**
+     * A transaction built from content keeps that content as objects, a deserialized one keeps only its
+     * serialized form and reads its content from there. Use this for transactions built locally that are kept for
+     * long, e.g. in a cache.
+     *
+     * @return an equal transaction whose content is backed by its serialized form, this if it already is
+     */
+    public Transaction compact() {
+        return view != null ? this : new Transaction(getView(), ID, null);
+    }
+
+    /**
+     * Serialize transaction content, the Avro binary encoding of SerializedTransaction, version 1
+     *
+     * @return the canonical encoding, whose digest is the transaction ID
+     * @throws IOException never, kept for compatibility
+     * @see TransactionCodec
+     */
+    public static byte[] toByteArray(List<TID> inputs, List<byte[]> outputs, List<Endorser> endorsers) throws IOException {
+        return TransactionCodec.encode(inputs, outputs, endorsers);
     }
 
     public static Transaction fromByteArray(byte[] array) throws IOException {
-        SerializedTransaction t = AvroSerializer.deserialize(array, SerializedTransaction.getClassSchema());
+        return fromByteArray(array, null);
+    }
+
+    /**
+     * Deserialize a transaction and intern its ID and the IDs of its inputs. Its content is read from a copy of
+     * array when accessed, see getOutputs.
+     *
+     * @param array serialized transaction
+     * @param pool  canonical TIDs, may be null to not intern
+     * @return the transaction
+     * @throws IOException if array is not a valid transaction
+     */
+    public static Transaction fromByteArray(byte[] array, HashPool<TID> pool) throws IOException {
+        TransactionView view = wrapCanonical(array, true);
+        TID id = view.getID();
+        return new Transaction(view, pool == null ? id : pool.intern(id), pool);
+    }
+
+    /**
+     * Deserialize many transactions at once, e.g. those of a block. Equivalent to calling fromByteArray for each.
+     *
+     * @param arrays serialized transactions
+     * @return transactions in the order of arrays
+     * @throws IOException if any of the arrays is not a valid transaction
+     */
+    public static List<Transaction> fromByteArrays(List<byte[]> arrays) throws IOException {
+        return fromByteArrays(arrays, null);
+    }
 
-        List<TID> inputs = AvroSerializer.fromByteBufferList(t.getInputs(), TID::new);
-        List<byte[]> outputs = AvroSerializer.fromByteBufferList(t.getOutputs(), Function.identity());
-        List<Endorser> endorsers = AvroSerializer.fromByteBufferList(t.getEndorsers(), Endorser::new);
+    /**
+     * Deserialize many transactions at once and intern their IDs and the IDs of their inputs
+     *
+     * @param arrays serialized transactions
+     * @param pool   canonical TIDs, may be null to not intern
+     * @return transactions in the order of arrays
+     * @throws IOException if any of the arrays is not a valid transaction
+     */
+    public static List<Transaction> fromByteArrays(List<byte[]> arrays, HashPool<TID> pool) throws IOException {
+        return wrapAll(arrays, pool, true);
+    }
 
-        return new TransactionBuilder()
-                .inputs(inputs)
-                .outputs(outputs)
-                .endorsers(endorsers)
-                .build();
+    /**
+     * Wrap serialized transactions, e.g. those of a block, without copying them. Their IDs are computed here,
+     * inputs, outputs and endorsers are read on access. The arrays must not be modified.
+     *
+     * @param arrays serialized transactions
+     * @param pool   canonical TIDs, may be null to not intern
+     * @return transactions in the order of arrays
+     * @throws IOException if any of the arrays is not a valid transaction
+     * @see #getView()
+     */
+    public static List<Transaction> wrapByteArrays(List<byte[]> arrays, HashPool<TID> pool) throws IOException {
+        return wrapAll(arrays, pool, false);
     }
 
+    private static List<Transaction> wrapAll(List<byte[]> arrays, HashPool<TID> pool, boolean copy) throws IOException {
+        List<Transaction> result = new ArrayList<>(arrays.size());
+        for (byte[] array : arrays) {
+            TransactionView view = wrapCanonical(array, copy);
+            TID id = view.getID();
+            result.add(new Transaction(view, pool == null ? id : pool.intern(id), pool));
+        }
+        return result;
+    }
+
+    // The ID is the digest of the canonical form, as written by toByteArray. Avro also reads longer encodings of
+    // the same content, e.g. arrays in several blocks or padded varints, those are serialized again in their version.
+    private static TransactionView wrapCanonical(byte[] array, boolean copy) throws IOException {
+        try {
+            return TransactionView.wrap(copy ? array.clone() : array);
+        } catch (IOException e) {
+            // a longer encoding Avro accepts, or invalid
+            TransactionCodec.Decoded t = TransactionCodec.decode(array, null);
+            return TransactionView.wrap(TransactionCodec.encode(t.version, t.packed, t.inputs, t.outputs, t.endorsers));
+        }
+    }
 }
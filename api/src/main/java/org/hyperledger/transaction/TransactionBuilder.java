@@ -16,18 +16,60 @@
 
 package org.hyperledger.transaction;
 
+import org.hyperledger.common.AvroSerializer;
 import org.hyperledger.common.Hash;
 import org.hyperledger.common.PrivateKey;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 public class TransactionBuilder {
+    /**
+     * minimum number of transactions to build in parallel in buildAll. Set high, as no parallel speedup has been
+     * measured yet that would justify splitting smaller batches.
+     */
+    public static final int PARALLEL_THRESHOLD = 256;
+
+    // minimum number of builders built by one task
+    private static final int MIN_BATCH = 8;
 
     private final List<TID> inputs = new ArrayList<>();
-    private final List<byte[]> outputs = new ArrayList<>();
+    // arrays are wrapped, buffers sliced, neither is copied before build
+    private final List<ByteBuffer> outputs = new ArrayList<>();
     private final List<Endorser> endorsers = new ArrayList<>();
     private final List<PrivateKey> endorserKeys = new ArrayList<>();
+    private int version = Transaction.VERSION_1;
+    // -1 if outputs are not compressed
+    private int compressThreshold = -1;
+
+    /**
+     * @param version serialization version, Transaction.VERSION_1 unless set
+     */
+    public TransactionBuilder version(int version) {
+        this.version = version;
+        return this;
+    }
+
+    /**
+     * Compress outputs of at least threshold bytes with Deflater, where that makes them shorter. The outputs are
+     * compressed before the ID is computed and decompressed when first read. Compression needs and selects
+     * Transaction.VERSION_2.
+     *
+     * @param threshold minimum length of an output to compress
+     * @throws IllegalArgumentException if threshold is negative
+     */
+    public TransactionBuilder compressOutputs(int threshold) {
+        if (threshold < 0) {
+            throw new IllegalArgumentException("Negative compression threshold " + threshold);
+        }
+        this.compressThreshold = threshold;
+        this.version = Transaction.VERSION_2;
+        return this;
+    }
 
     public TransactionBuilder inputs(List<TID> inputs) {
         this.inputs.addAll(inputs);
@@ -40,12 +82,26 @@ public class TransactionBuilder {
     }
 
     public TransactionBuilder outputs(List<byte[]> outputs) {
-        this.outputs.addAll(outputs);
+        for (byte[] output : outputs) {
+            output(output);
+        }
         return this;
     }
 
     public TransactionBuilder output(byte[] output) {
-        outputs.add(output);
+        outputs.add(ByteBuffer.wrap(output));
+        return this;
+    }
+
+    /**
+     * Add the remaining bytes of a heap, direct or memory mapped buffer as an output. They are read once by build
+     * into the serialized transaction, so a large document is not copied to the heap first. The content of the
+     * transaction is then read from its serialized form, as that of a deserialized one.
+     *
+     * @param output output between position and limit, not to be modified until build, its position is not altered
+     */
+    public TransactionBuilder output(ByteBuffer output) {
+        outputs.add(output.slice());
         return this;
     }
 
@@ -60,11 +116,114 @@ public class TransactionBuilder {
     }
 
     public Transaction build() {
-        for (PrivateKey key : endorserKeys) {
-            Endorser endorser = Endorser.create(Hash.of(outputs.get(0)).toByteArray(), key);
-            endorsers.add(endorser);
+        if (!endorserKeys.isEmpty()) {
+            // hashed once for all keys
+            byte[] hash = Hash.of(outputs.get(0)).toByteArray();
+            for (PrivateKey key : endorserKeys) {
+                endorsers.add(Endorser.create(hash, key));
+            }
+        }
+        List<byte[]> arrays = new ArrayList<>(outputs.size());
+        for (ByteBuffer output : outputs) {
+            if (compressThreshold < 0 && !isArray(output)) {
+                // not copied to an array first
+                return Transaction.ofBuffers(inputs, outputs, endorsers, version);
+            }
+            // copied if compressed, that needs an array anyway
+            arrays.add(AvroSerializer.toArray(output));
+        }
+        if (compressThreshold >= 0) {
+            return new Transaction(inputs, arrays, endorsers, version, compressThreshold);
+        }
+        return new Transaction(inputs, arrays, endorsers, version);
+    }
+
+    /**
+     * Prepare the inputs, endorsers, endorsement keys, version and compression of this builder for transactions
+     * that only differ in their outputs
+     *
+     * @return template of transactions
+     * @throws IllegalStateException if outputs were added
+     * @see TransactionTemplate#build(List)
+     */
+    public TransactionTemplate template() {
+        if (!outputs.isEmpty()) {
+            throw new IllegalStateException("Outputs are given to the template");
         }
-        return new Transaction(inputs, outputs, endorsers);
+        return new TransactionTemplate(inputs, endorsers, endorserKeys, version, compressThreshold);
+    }
+
+    /**
+     * Build many transactions in the common ForkJoinPool, see buildAll(List, ForkJoinPool)
+     *
+     * @param builders specifications of the transactions
+     * @return transactions in the order of builders
+     */
+    public static List<Transaction> buildAll(List<TransactionBuilder> builders) {
+        return buildAll(builders, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Build many transactions, e.g. of a bulk import. Signing, serialization and the IDs are computed in the pool,
+     * every builder is built once as by build. Less than PARALLEL_THRESHOLD builders are built on the calling
+     * thread.
+     *
+     * @param builders specifications of the transactions, not to be used concurrently
+     * @param pool     builds ranges of the builders
+     * @return transactions in the order of builders
+     */
+    public static List<Transaction> buildAll(List<TransactionBuilder> builders, ForkJoinPool pool) {
+        Transaction[] result = new Transaction[builders.size()];
+        if (builders.size() < PARALLEL_THRESHOLD || pool.getParallelism() < 2) {
+            for (int i = 0; i < result.length; i++) {
+                result[i] = builders.get(i).build();
+            }
+        } else {
+            pool.invoke(new BuildTask(builders, 0, builders.size(), batchSize(builders.size(), pool), result));
+        }
+        return Arrays.asList(result);
+    }
+
+    // about four batches per worker
+    private static int batchSize(int count, ForkJoinPool pool) {
+        return Math.max(MIN_BATCH, count / (4 * pool.getParallelism()));
+    }
+
+    private static final class BuildTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<TransactionBuilder> builders;
+        private final int from;
+        private final int to;
+        private final int batch;
+        private final Transaction[] result;
+
+        BuildTask(List<TransactionBuilder> builders, int from, int to, int batch, Transaction[] result) {
+            this.builders = builders;
+            this.from = from;
+            this.to = to;
+            this.batch = batch;
+            this.result = result;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > batch) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new BuildTask(builders, from, middle, batch, result),
+                        new BuildTask(builders, middle, to, batch, result));
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                result[i] = builders.get(i).build();
+            }
+        }
+    }
+
+    // true if the buffer wraps all of an array
+    private static boolean isArray(ByteBuffer buffer) {
+        return buffer.hasArray() && buffer.arrayOffset() == 0 && buffer.position() == 0
+                && buffer.remaining() == buffer.array().length;
     }
 
 }
@@ -0,0 +1,562 @@
+/**
+ * Copyright 2016 Digital Asset Holdings, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.transaction;
+
+import org.hyperledger.common.HashPool;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Avro binary encoding of SerializedTransaction without the generic Avro machinery. The record is three arrays
+ * of bytes: inputs, outputs and endorser signatures. An array is written as one block, the zig-zag varint item
+ * count followed by the items, and ends with a zero count, every bytes item is its zig-zag varint length
+ * followed by the content. The output is byte for byte what SpecificDatumWriter writes.
+ * <p>
+ * Version 2 is the byte V2_TAG followed by SerializedTransactionV2, whose inputs are fixed 32 byte digests
+ * without a length. The tag would start a version 1 array with a block count of -2, so encodings that start
+ * with it are read as version 2.
+ * <p>
+ * Version 2 with packed outputs starts with V2_PACKED_TAG instead, a block count of -4 in version 1. Every output
+ * is then STORED followed by the output, or DEFLATED followed by the zig-zag varint length of the output and
+ * its raw deflate stream. Outputs are deflated at a fixed level, so the same JDK packs the same content to the
+ * same bytes. Packed items are kept as read and never deflated again, so the ID of a transaction read does not
+ * depend on the JDK. The deflated outputs of a transaction expand to at most MAX_EXPANDED_LENGTH bytes together,
+ * outputs beyond that are stored.
+ * <p>
+ * The decoder reads everything Avro's BinaryDecoder reads: arrays in several blocks, blocks with a negative
+ * count followed by their size in bytes, and varints longer than needed. There are two exceptions: a version 1
+ * encoding whose first block has a negative count is rejected, as its first byte could be a version tag, and so
+ * is a ten byte varint with bits beyond 64, which Avro silently drops. Whether an encoding is the canonical one
+ * is up to TransactionView.
+ *
+ * @see SerializedTransaction
+ * @see SerializedTransactionV2
+ */
+final class TransactionCodec {
+    static final int V1 = 1;
+    static final int V2 = 2;
+    static final byte V2_TAG = 0x03;
+    static final byte V2_PACKED_TAG = 0x07;
+    static final byte STORED = 0;
+    static final byte DEFLATED = 1;
+    // limits the memory a packed output may expand to
+    static final int MAX_OUTPUT_LENGTH = 1 << 26;
+    // limits the memory all deflated outputs of a transaction may expand to
+    static final int MAX_EXPANDED_LENGTH = 1 << 26;
+    private static final int DIGEST = 32;
+
+    private static final ThreadLocal<Deflater> deflater =
+            ThreadLocal.withInitial(() -> new Deflater(Deflater.DEFAULT_COMPRESSION, true));
+    private static final ThreadLocal<Inflater> inflater = ThreadLocal.withInitial(() -> new Inflater(true));
+
+    private TransactionCodec() {
+    }
+
+    /**
+     * Content of a decoded transaction
+     */
+    static final class Decoded {
+        final List<TID> inputs;
+        // outputs as encoded, see unpack if packed
+        final List<byte[]> outputs;
+        final List<Endorser> endorsers;
+        final int version;
+        final boolean packed;
+
+        private Decoded(List<TID> inputs, List<byte[]> outputs, List<Endorser> endorsers, int version,
+                        boolean packed) {
+            this.inputs = inputs;
+            this.outputs = outputs;
+            this.endorsers = endorsers;
+            this.version = version;
+            this.packed = packed;
+        }
+    }
+
+    /**
+     * @param encoded a serialized transaction
+     * @return its version, from the tag
+     */
+    static int version(byte[] encoded) {
+        return encoded.length > 0 && (encoded[0] == V2_TAG || encoded[0] == V2_PACKED_TAG) ? V2 : V1;
+    }
+
+    /**
+     * @param encoded a serialized transaction
+     * @return true if its outputs are packed
+     */
+    static boolean packed(byte[] encoded) {
+        return encoded.length > 0 && encoded[0] == V2_PACKED_TAG;
+    }
+
+    static byte[] encode(List<TID> inputs, List<byte[]> outputs, List<Endorser> endorsers) {
+        return encode(V1, false, inputs, outputs, endorsers);
+    }
+
+    static byte[] encode(int version, List<TID> inputs, List<byte[]> outputs, List<Endorser> endorsers) {
+        return encode(version, false, inputs, outputs, endorsers);
+    }
+
+    /**
+     * @param packed  true if outputs are packed, see pack, only in version 2
+     * @param outputs outputs as encoded
+     */
+    static byte[] encode(int version, boolean packed, List<TID> inputs, List<byte[]> outputs, List<Endorser> endorsers) {
+        return encode(version, packed, inputs, arrays(outputs), endorsers);
+    }
+
+    /**
+     * Encode outputs from the remaining bytes of heap, direct or mapped buffers, their positions are not altered.
+     * The encoding is the same as that of the outputs copied to arrays.
+     */
+    static byte[] encodeBuffers(int version, List<TID> inputs, List<ByteBuffer> outputs, List<Endorser> endorsers) {
+        return encode(version, false, inputs, buffers(outputs), endorsers);
+    }
+
+    /**
+     * Encode the part of a transaction before its outputs, the tag and the inputs, to encode transactions that
+     * only differ in their outputs and endorsers with encode(byte[], List, List)
+     */
+    static byte[] encodePrefix(int version, boolean packed, List<TID> inputs) {
+        byte[] out = new byte[prefixSize(version, packed, inputs.size())];
+        writePrefix(version, packed, inputs, out);
+        return out;
+    }
+
+    /**
+     * @param prefix  tag and inputs, see encodePrefix
+     * @param outputs outputs as encoded, packed if the prefix says so
+     */
+    static byte[] encode(byte[] prefix, List<byte[]> outputs, List<Endorser> endorsers) {
+        Outputs items = arrays(outputs);
+        byte[] out = Arrays.copyOf(prefix, prefix.length + suffixSize(items, endorsers));
+        writeSuffix(items, endorsers, out, prefix.length);
+        return out;
+    }
+
+    // outputs to encode, read where they are
+    private interface Outputs {
+        int size();
+
+        int length(int i);
+
+        // copy output i to out at position
+        void copy(int i, byte[] out, int position);
+    }
+
+    private static Outputs arrays(List<byte[]> outputs) {
+        return new Outputs() {
+            @Override
+            public int size() {
+                return outputs.size();
+            }
+
+            @Override
+            public int length(int i) {
+                return outputs.get(i).length;
+            }
+
+            @Override
+            public void copy(int i, byte[] out, int position) {
+                byte[] output = outputs.get(i);
+                System.arraycopy(output, 0, out, position, output.length);
+            }
+        };
+    }
+
+    private static Outputs buffers(List<ByteBuffer> outputs) {
+        return new Outputs() {
+            @Override
+            public int size() {
+                return outputs.size();
+            }
+
+            @Override
+            public int length(int i) {
+                return outputs.get(i).remaining();
+            }
+
+            @Override
+            public void copy(int i, byte[] out, int position) {
+                ByteBuffer output = outputs.get(i).duplicate();
+                output.get(out, position, output.remaining());
+            }
+        };
+    }
+
+    private static byte[] encode(int version, boolean packed, List<TID> inputs, Outputs outputs, List<Endorser> endorsers) {
+        int prefixSize = prefixSize(version, packed, inputs.size());
+        byte[] out = new byte[prefixSize + suffixSize(outputs, endorsers)];
+        writePrefix(version, packed, inputs, out);
+        writeSuffix(outputs, endorsers, out, prefixSize);
+        return out;
+    }
+
+    private static int prefixSize(int version, boolean packed, int inputs) {
+        if (version != V1 && version != V2) {
+            throw new IllegalArgumentException("Unknown transaction version " + version);
+        }
+        if (packed && version != V2) {
+            throw new IllegalArgumentException("Packed outputs need version 2");
+        }
+        int inputSize = version == V2 ? DIGEST : itemSize(DIGEST);
+        return (version == V2 ? 1 : 0) + arraySize(inputs, inputs * inputSize);
+    }
+
+    private static int suffixSize(Outputs outputs, List<Endorser> endorsers) {
+        int outputsSize = 0;
+        for (int i = 0; i < outputs.size(); i++) {
+            outputsSize += itemSize(outputs.length(i));
+        }
+        int endorsersSize = 0;
+        for (int i = 0; i < endorsers.size(); i++) {
+            endorsersSize += itemSize(endorsers.get(i).getSignature().length);
+        }
+        return arraySize(outputs.size(), outputsSize) + arraySize(endorsers.size(), endorsersSize);
+    }
+
+    private static void writePrefix(int version, boolean packed, List<TID> inputs, byte[] out) {
+        int position = 0;
+        if (version == V2) {
+            out[position++] = packed ? V2_PACKED_TAG : V2_TAG;
+        }
+        position = writeLong(inputs.size(), out, position);
+        for (int i = 0; i < inputs.size(); i++) {
+            if (version == V1) {
+                position = writeLong(DIGEST, out, position);
+            }
+            inputs.get(i).copyTo(out, position);
+            position += DIGEST;
+        }
+        writeArrayEnd(inputs.size(), out, position);
+    }
+
+    private static void writeSuffix(Outputs outputs, List<Endorser> endorsers, byte[] out, int position) {
+        position = writeLong(outputs.size(), out, position);
+        for (int i = 0; i < outputs.size(); i++) {
+            int length = outputs.length(i);
+            position = writeLong(length, out, position);
+            outputs.copy(i, out, position);
+            position += length;
+        }
+        position = writeArrayEnd(outputs.size(), out, position);
+
+        position = writeLong(endorsers.size(), out, position);
+        for (int i = 0; i < endorsers.size(); i++) {
+            position = writeBytes(endorsers.get(i).getSignature(), out, position);
+        }
+        writeArrayEnd(endorsers.size(), out, position);
+    }
+
+    /**
+     * @param data serialized transaction, all of it
+     * @param pool canonical TIDs for the inputs, may be null to not intern
+     * @return content of the transaction
+     * @throws IOException if data is not a valid transaction or has trailing bytes
+     */
+    static Decoded decode(byte[] data, HashPool<TID> pool) throws IOException {
+        Reader reader = new Reader(data);
+        int version = version(data);
+        if (version == V2) {
+            reader.position = 1;
+        } else if (data.length > 0 && (data[0] & 1) != 0) {
+            // a negative zig-zag count, which could not be told from a version tag for -2 and -4
+            throw new IOException("Version 1 transaction starts with a negative block count");
+        }
+        List<TID> inputs = new ArrayList<>();
+        for (long count = reader.readBlockCount(); count != 0; count = reader.readBlockCount()) {
+            for (; count > 0; count--) {
+                if (version == V1) {
+                    int length = reader.readLength();
+                    if (length != DIGEST) {
+                        throw new IOException("Transaction input of " + length + " bytes");
+                    }
+                }
+                TID input = reader.readDigest();
+                inputs.add(pool == null ? input : pool.intern(input));
+            }
+        }
+        List<byte[]> outputs = new ArrayList<>();
+        long expanded = 0;
+        for (long count = reader.readBlockCount(); count != 0; count = reader.readBlockCount()) {
+            for (; count > 0; count--) {
+                byte[] output = reader.readFixed(reader.readLength());
+                if (packed(data)) {
+                    expanded = addExpanded(expanded, output, 0, output.length);
+                }
+                outputs.add(output);
+            }
+        }
+        List<Endorser> endorsers = new ArrayList<>();
+        for (long count = reader.readBlockCount(); count != 0; count = reader.readBlockCount()) {
+            for (; count > 0; count--) {
+                endorsers.add(new Endorser(reader.readFixed(reader.readLength())));
+            }
+        }
+        if (reader.position != data.length) {
+            throw new IOException("Trailing bytes after transaction");
+        }
+        return new Decoded(inputs, outputs, endorsers, version, packed(data));
+    }
+
+    /**
+     * Pack an output, deflated if it has at least threshold bytes and that makes it shorter, otherwise stored
+     *
+     * @param output    an output
+     * @param threshold minimum length to deflate
+     * @return the packed output
+     */
+    static byte[] pack(byte[] output, int threshold) {
+        if (output.length >= threshold && output.length > 0 && output.length <= MAX_OUTPUT_LENGTH) {
+            Deflater d = deflater.get();
+            d.reset();
+            d.setInput(output);
+            d.finish();
+            int header = 1 + varLongSize(output.length);
+            // only worth keeping if shorter than stored
+            byte[] packed = new byte[output.length];
+            int length = header;
+            while (!d.finished() && length < packed.length) {
+                length += d.deflate(packed, length, packed.length - length);
+            }
+            if (d.finished() && length < packed.length) {
+                packed[0] = DEFLATED;
+                writeLong(output.length, packed, 1);
+                return Arrays.copyOf(packed, length);
+            }
+        }
+        byte[] stored = new byte[output.length + 1];
+        stored[0] = STORED;
+        System.arraycopy(output, 0, stored, 1, output.length);
+        return stored;
+    }
+
+    /**
+     * Pack the outputs of a transaction, see pack. Once the deflated outputs would expand to more than
+     * MAX_EXPANDED_LENGTH, the rest are stored.
+     *
+     * @param outputs   outputs of a transaction
+     * @param threshold minimum length to deflate
+     * @return the packed outputs
+     */
+    static List<byte[]> pack(List<byte[]> outputs, int threshold) {
+        List<byte[]> packed = new ArrayList<>(outputs.size());
+        long expanded = 0;
+        for (byte[] output : outputs) {
+            if (expanded + output.length <= MAX_EXPANDED_LENGTH) {
+                byte[] p = pack(output, threshold);
+                if (p[0] == DEFLATED) {
+                    expanded += output.length;
+                }
+                packed.add(p);
+            } else {
+                packed.add(pack(output, Integer.MAX_VALUE));
+            }
+        }
+        return packed;
+    }
+
+    /**
+     * @param packed a packed output
+     * @return the output
+     * @throws IOException if packed is not a valid packed output
+     */
+    static byte[] unpack(byte[] packed) throws IOException {
+        int[] header = checkPacked(packed, 0, packed.length);
+        if (packed[0] == STORED) {
+            return Arrays.copyOfRange(packed, 1, packed.length);
+        }
+        int start = header[0];
+        byte[] output = new byte[header[1]];
+        Inflater i = inflater.get();
+        i.reset();
+        i.setInput(packed, start, packed.length - start);
+        try {
+            int length = 0;
+            while (length < output.length && !i.finished()) {
+                int n = i.inflate(output, length, output.length - length);
+                if (n == 0 && (i.needsInput() || i.needsDictionary())) {
+                    break;
+                }
+                length += n;
+            }
+            if (length != output.length || !i.finished() || i.getRemaining() != 0) {
+                throw new IOException("Packed output does not expand to its length");
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Invalid packed output", e);
+        }
+        return output;
+    }
+
+    /**
+     * Check the header of a packed output
+     *
+     * @return offset of the deflate stream and the length of the output, if deflated
+     * @throws IOException if the header is invalid
+     */
+    static int[] checkPacked(byte[] data, int offset, int length) throws IOException {
+        if (length < 1 || (data[offset] != STORED && data[offset] != DEFLATED)) {
+            throw new IOException("Invalid packed output");
+        }
+        if (data[offset] == STORED) {
+            return new int[]{offset + 1, length - 1};
+        }
+        Reader reader = new Reader(Arrays.copyOfRange(data, offset + 1, offset + Math.min(length, 11)));
+        long expanded = reader.readLong();
+        if (reader.position != varLongSize(expanded) || expanded <= 0 || expanded > MAX_OUTPUT_LENGTH) {
+            throw new IOException("Invalid packed output length " + expanded);
+        }
+        return new int[]{offset + 1 + reader.position, (int) expanded};
+    }
+
+    /**
+     * Check the header of a packed output and add its expanded length, if deflated, to that of the outputs before
+     *
+     * @param expanded expanded length of the deflated outputs before
+     * @return expanded length of the deflated outputs up to this one
+     * @throws IOException if the header is invalid or the outputs expand to more than MAX_EXPANDED_LENGTH
+     */
+    static long addExpanded(long expanded, byte[] data, int offset, int length) throws IOException {
+        int[] header = checkPacked(data, offset, length);
+        if (data[offset] == DEFLATED) {
+            expanded += header[1];
+            if (expanded > MAX_EXPANDED_LENGTH) {
+                throw new IOException("Packed outputs expand to more than " + MAX_EXPANDED_LENGTH + " bytes");
+            }
+        }
+        return expanded;
+    }
+
+    private static final class Reader {
+        private final byte[] data;
+        private int position;
+
+        private Reader(byte[] data) {
+            this.data = data;
+        }
+
+        // item count of the next block of an array, 0 at its end
+        long readBlockCount() throws IOException {
+            long count = readLong();
+            if (count == 0) {
+                return 0;
+            }
+            if (count < 0) {
+                // the block size in bytes follows, to allow skipping the block
+                count = -count;
+                readLong();
+            }
+            if (count > data.length - position) {
+                throw new IOException("Array of " + count + " items exceeds the data");
+            }
+            return count;
+        }
+
+        int readLength() throws IOException {
+            long length = readLong();
+            if (length < 0 || length > Integer.MAX_VALUE) {
+                throw new IOException("Malformed data, length is " + length);
+            }
+            return (int) length;
+        }
+
+        byte[] readFixed(int length) throws IOException {
+            if (length > data.length - position) {
+                throw new IOException("Item of " + length + " bytes exceeds the data");
+            }
+            byte[] result = new byte[length];
+            System.arraycopy(data, position, result, 0, length);
+            position += length;
+            return result;
+        }
+
+        // read in place, without a copy of the digest
+        TID readDigest() throws IOException {
+            if (DIGEST > data.length - position) {
+                throw new IOException("Truncated transaction");
+            }
+            TID digest = TID.createFromArray(data, position);
+            position += DIGEST;
+            return digest;
+        }
+
+        long readLong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                if (position >= data.length) {
+                    throw new IOException("Truncated transaction");
+                }
+                int b = data[position++];
+                value |= (long) (b & 0x7f) << shift;
+                if ((b & 0x80) == 0) {
+                    if (shift == 63 && b > 1) {
+                        throw new IOException("Invalid long encoding");
+                    }
+                    return (value >>> 1) ^ -(value & 1);
+                }
+            }
+            throw new IOException("Invalid long encoding");
+        }
+    }
+
+    private static int itemSize(int length) {
+        return varLongSize(length) + length;
+    }
+
+    // count unless empty, items, zero count that ends the array
+    private static int arraySize(int count, int itemsSize) {
+        return (count == 0 ? 0 : varLongSize(count)) + itemsSize + 1;
+    }
+
+    private static int varLongSize(long n) {
+        long v = (n << 1) ^ (n >> 63);
+        int size = 1;
+        while ((v & ~0x7fL) != 0) {
+            v >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    private static int writeBytes(byte[] bytes, byte[] out, int position) {
+        position = writeLong(bytes.length, out, position);
+        System.arraycopy(bytes, 0, out, position, bytes.length);
+        return position + bytes.length;
+    }
+
+    private static int writeArrayEnd(int count, byte[] out, int position) {
+        // an empty array is just its end, the count was not written
+        return count == 0 ? position : writeLong(0, out, position);
+    }
+
+    private static int writeLong(long n, byte[] out, int position) {
+        long v = (n << 1) ^ (n >> 63);
+        while ((v & ~0x7fL) != 0) {
+            out[position++] = (byte) ((v & 0x7f) | 0x80);
+            v >>>= 7;
+        }
+        out[position++] = (byte) v;
+        return position;
+    }
+}
@@ -0,0 +1,193 @@
+/**
+ * Copyright 2016 Digital Asset Holdings, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.transaction;
+
+import org.hyperledger.common.HashPool;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * Reads the transactions written by TransactionWriter, one frame at a time, either streaming from a channel
+ * through a buffer or from a memory mapped file. Views of a mapped file are slices of the mapping, so a file can be
+ * iterated without copying it to the heap. Not thread safe.
+ *
+ * @see TransactionWriter
+ */
+public class TransactionReader implements Closeable {
+    // null if mapped
+    private final ReadableByteChannel channel;
+    private ByteBuffer buffer;
+    private final boolean checksums;
+    private final CRC32 crc = new CRC32();
+
+    /**
+     * Stream transactions from a channel
+     *
+     * @param channel channel positioned at the header, closed with the reader
+     * @throws IOException if the channel fails or does not start with a known header
+     */
+    public TransactionReader(ReadableByteChannel channel) throws IOException {
+        this(channel, (ByteBuffer) ByteBuffer.allocate(TransactionWriter.BUFFER_SIZE).flip());
+    }
+
+    private TransactionReader(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+        this.channel = channel;
+        this.buffer = buffer;
+        if (!fill(TransactionWriter.HEADER_SIZE)) {
+            throw new IOException("Not a transaction file");
+        }
+        for (byte b : TransactionWriter.MAGIC) {
+            if (buffer.get() != b) {
+                throw new IOException("Not a transaction file");
+            }
+        }
+        byte version = buffer.get();
+        if (version != TransactionWriter.VERSION) {
+            throw new IOException("Unknown transaction file version " + version);
+        }
+        byte flags = buffer.get();
+        if ((flags & ~TransactionWriter.CRC32_FLAG) != 0) {
+            throw new IOException("Unknown transaction file flags " + flags);
+        }
+        checksums = flags == TransactionWriter.CRC32_FLAG;
+    }
+
+    /**
+     * Map a file of transactions into memory, it must not be modified while it is read
+     *
+     * @param path the file
+     * @return reader of the mapped file
+     * @throws IOException if the file can not be mapped or does not start with a known header
+     */
+    public static TransactionReader map(Path path) throws IOException {
+        try (FileChannel file = FileChannel.open(path, READ)) {
+            if (file.size() > Integer.MAX_VALUE) {
+                throw new IOException("File of " + file.size() + " bytes is too large to map, stream it instead");
+            }
+            return new TransactionReader(null, file.map(FileChannel.MapMode.READ_ONLY, 0, file.size()));
+        }
+    }
+
+    /**
+     * @return view of the next transaction, of the mapped file if mapped, null at the end
+     * @throws IOException if the channel fails, the frame is truncated or corrupt
+     */
+    public TransactionView nextView() throws IOException {
+        ByteBuffer frame = nextFrame();
+        if (frame == null) {
+            return null;
+        }
+        return channel == null ? TransactionView.wrap(frame) : TransactionView.wrap(copy(frame));
+    }
+
+    /**
+     * @return the next transaction, copied to the heap and decoded on first access, null at the end
+     * @throws IOException if the channel fails, the frame is truncated or corrupt
+     */
+    public Transaction next() throws IOException {
+        ByteBuffer frame = nextFrame();
+        return frame == null ? null : Transaction.wrap(TransactionView.wrap(copy(frame)));
+    }
+
+    /**
+     * Read up to max transactions
+     *
+     * @param max  maximum number of transactions
+     * @param pool canonical TIDs, may be null to not intern
+     * @return the transactions read, empty at the end
+     * @throws IOException if the channel fails, a frame is truncated or corrupt
+     * @see Transaction#wrapByteArrays
+     */
+    public List<Transaction> readBatch(int max, HashPool<TID> pool) throws IOException {
+        List<byte[]> arrays = new ArrayList<>();
+        for (ByteBuffer frame; arrays.size() < max && (frame = nextFrame()) != null; ) {
+            arrays.add(copy(frame));
+        }
+        return Transaction.wrapByteArrays(arrays, pool);
+    }
+
+    // the next transaction encoding, valid until the next call
+    private ByteBuffer nextFrame() throws IOException {
+        if (!fill(1)) {
+            return null;
+        }
+        if (!fill(4)) {
+            throw new IOException("Truncated frame");
+        }
+        int length = buffer.getInt();
+        if (length < 0 || length > TransactionWriter.MAX_FRAME_LENGTH) {
+            throw new IOException("Invalid frame length " + length);
+        }
+        if (!fill(length + (checksums ? 4 : 0))) {
+            throw new IOException("Truncated frame");
+        }
+        ByteBuffer frame = buffer.slice();
+        frame.limit(length);
+        buffer.position(buffer.position() + length);
+        if (checksums) {
+            crc.reset();
+            crc.update(frame.duplicate());
+            if ((int) crc.getValue() != buffer.getInt()) {
+                throw new IOException("Frame checksum mismatch");
+            }
+        }
+        return frame;
+    }
+
+    // true if at least n bytes are buffered, reading from the channel if needed
+    private boolean fill(int n) throws IOException {
+        if (buffer.remaining() >= n) {
+            return true;
+        }
+        if (channel == null) {
+            return false;
+        }
+        ByteBuffer target = buffer.capacity() < n
+                ? ByteBuffer.allocate(Math.max(n, 2 * buffer.capacity())).put(buffer)
+                : buffer.compact();
+        while (target.position() < n) {
+            if (channel.read(target) < 0) {
+                break;
+            }
+        }
+        target.flip();
+        buffer = target;
+        return buffer.remaining() >= n;
+    }
+
+    private static byte[] copy(ByteBuffer frame) {
+        byte[] array = new byte[frame.remaining()];
+        frame.get(array);
+        return array;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+    }
+}
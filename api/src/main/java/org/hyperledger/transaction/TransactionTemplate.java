@@ -0,0 +1,103 @@
+/**
+ * Copyright 2016 Digital Asset Holdings, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.transaction;
+
+import org.hyperledger.common.Hash;
+import org.hyperledger.common.HashAlgorithm;
+import org.hyperledger.common.HashPrefix;
+import org.hyperledger.common.PrivateKey;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Transactions that share their inputs, endorsers, endorsement keys and serialization and differ only in their
+ * outputs. The inputs are encoded once and precede the outputs in the serialized form, so the state of the ID
+ * digest after them is kept as well. Building a transaction then only encodes and hashes its outputs and
+ * endorsers. The transactions equal those built by a TransactionBuilder from the same content.
+ * <p>
+ * Thread safe.
+ *
+ * @see TransactionBuilder#template()
+ */
+public class TransactionTemplate {
+    private final List<TID> inputs;
+    private final List<Endorser> endorsers;
+    private final List<PrivateKey> endorserKeys;
+    // -1 if outputs are not compressed
+    private final int compressThreshold;
+    // serialized tag and inputs
+    private final byte[] prefix;
+    private final HashPrefix hashPrefix;
+
+    TransactionTemplate(List<TID> inputs, List<Endorser> endorsers, List<PrivateKey> endorserKeys, int version,
+                        int compressThreshold) {
+        this.inputs = Collections.unmodifiableList(new ArrayList<>(inputs));
+        this.endorsers = new ArrayList<>(endorsers);
+        this.endorserKeys = new ArrayList<>(endorserKeys);
+        this.compressThreshold = compressThreshold;
+        this.prefix = TransactionCodec.encodePrefix(version, compressThreshold >= 0, inputs);
+        this.hashPrefix = new HashPrefix(HashAlgorithm.getDefault(), prefix, 0, prefix.length);
+    }
+
+    public List<TID> getInputs() {
+        return inputs;
+    }
+
+    /**
+     * @return version of the serialized transactions, Transaction.VERSION_1 or VERSION_2
+     */
+    public int getVersion() {
+        return TransactionCodec.version(prefix);
+    }
+
+    /**
+     * Build a transaction of this template, endorsed by the endorsers of the template followed by signatures of
+     * its keys
+     *
+     * @param outputs outputs of the transaction, at least one if there are keys
+     * @return the transaction
+     */
+    public Transaction build(List<byte[]> outputs) {
+        List<Endorser> signed = new ArrayList<>(endorsers.size() + endorserKeys.size());
+        signed.addAll(endorsers);
+        if (!endorserKeys.isEmpty()) {
+            byte[] hash = Hash.of(outputs.get(0)).toByteArray();
+            for (PrivateKey key : endorserKeys) {
+                signed.add(Endorser.create(hash, key));
+            }
+        }
+        List<byte[]> packed = null;
+        if (compressThreshold >= 0) {
+            packed = TransactionCodec.pack(outputs, compressThreshold);
+        }
+        byte[] bytes = TransactionCodec.encode(prefix, packed == null ? outputs : packed, signed);
+        // the state is of the algorithm that was the default when the template was created
+        Hash id = hashPrefix.getAlgorithm() == HashAlgorithm.getDefault() ? hashPrefix.hashMessage(bytes) : Hash.of(bytes);
+        return new Transaction(inputs, outputs, packed, signed, bytes, new TID(id));
+    }
+
+    /**
+     * Build a transaction of this template with a single output
+     *
+     * @param output output of the transaction
+     * @return the transaction
+     */
+    public Transaction build(byte[] output) {
+        return build(Collections.singletonList(output));
+    }
+}
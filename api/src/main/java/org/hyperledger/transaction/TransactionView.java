@@ -0,0 +1,370 @@
+/**
+ * Copyright 2016 Digital Asset Holdings, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.transaction;
+
+import org.hyperledger.common.Hash;
+import org.hyperledger.common.HashPool;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Read only view of a serialized transaction. Only the Avro array headers and item lengths are parsed, inputs,
+ * outputs and endorser signatures are read from the underlying buffer when accessed, outputs and signatures as
+ * slices without copying.
+ * <p>
+ * Only the canonical encodings, as written by Transaction.toByteArray in either version, are accepted, so that
+ * the ID of the view is the digest of its bytes exactly as for Transaction.
+ *
+ * @see Transaction#getView()
+ * @see Transaction#wrapByteArrays
+ */
+public class TransactionView {
+    private static final int DIGEST = 32;
+
+    private final ByteBuffer data;
+    // backing array if the view spans all of it
+    private final byte[] array;
+    // offset and length of each item
+    private final int[] inputs;
+    private final int[] outputs;
+    private final int[] endorsers;
+    private final int version;
+    private final boolean packed;
+    private TID id;
+
+    private TransactionView(ByteBuffer data, byte[] array) throws IOException {
+        this.data = data;
+        this.array = array;
+        byte tag = data.limit() > 0 ? data.get(0) : 0;
+        packed = tag == TransactionCodec.V2_PACKED_TAG;
+        version = tag == TransactionCodec.V2_TAG || packed ? TransactionCodec.V2 : TransactionCodec.V1;
+        int[] position = {version == TransactionCodec.V2 ? 1 : 0};
+        // version 2 inputs are fixed digests without a length
+        inputs = readArray(position, version == TransactionCodec.V2 ? DIGEST : -1);
+        outputs = readArray(position, -1);
+        endorsers = readArray(position, -1);
+        if (position[0] != data.limit()) {
+            throw new IOException("Trailing bytes after transaction");
+        }
+        for (int i = 0; i < inputs.length; i += 2) {
+            if (inputs[i + 1] != DIGEST) {
+                throw new IOException("Transaction input of " + inputs[i + 1] + " bytes");
+            }
+        }
+        if (packed) {
+            long expanded = 0;
+            for (int i = 0; i < outputs.length; i += 2) {
+                byte[] header = new byte[Math.min(outputs[i + 1], 11)];
+                ((ByteBuffer) data.duplicate().position(outputs[i])).get(header);
+                expanded = TransactionCodec.addExpanded(expanded, header, 0, header.length);
+            }
+        }
+    }
+
+    /**
+     * Create a view of the remaining bytes of a buffer. The buffer must not be modified while the view is used,
+     * its position is not changed.
+     *
+     * @param encoded a serialized transaction
+     * @return a view of the transaction
+     * @throws IOException if encoded is not the canonical encoding of a transaction
+     */
+    public static TransactionView wrap(ByteBuffer encoded) throws IOException {
+        return new TransactionView(encoded.slice().asReadOnlyBuffer(), null);
+    }
+
+    /**
+     * Create a view of an array. The array must not be modified while the view is used.
+     *
+     * @param encoded a serialized transaction
+     * @return a view of the transaction
+     * @throws IOException if encoded is not the canonical encoding of a transaction
+     */
+    public static TransactionView wrap(byte[] encoded) throws IOException {
+        return new TransactionView(ByteBuffer.wrap(encoded).asReadOnlyBuffer(), encoded);
+    }
+
+    // one block of items followed by the empty block, minimal varints, items of a fixed length if not negative
+    private int[] readArray(int[] position, int fixed) throws IOException {
+        long count = readLong(position);
+        if (count == 0) {
+            return new int[0];
+        }
+        if (count < 0 || count > data.limit() - position[0]) {
+            throw new IOException("Not a canonical transaction encoding");
+        }
+        int[] items = new int[2 * (int) count];
+        for (int i = 0; i < items.length; i += 2) {
+            long length = fixed < 0 ? readLong(position) : fixed;
+            if (length < 0 || length > data.limit() - position[0]) {
+                throw new IOException("Transaction item of " + length + " bytes exceeds the data");
+            }
+            items[i] = position[0];
+            items[i + 1] = (int) length;
+            position[0] += (int) length;
+        }
+        if (readLong(position) != 0) {
+            throw new IOException("Not a canonical transaction encoding");
+        }
+        return items;
+    }
+
+    private long readLong(int[] position) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (position[0] >= data.limit()) {
+                throw new IOException("Truncated transaction");
+            }
+            int b = data.get(position[0]++);
+            value |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                // a padded varint, or bits beyond 64 in the tenth byte
+                if ((b == 0 && shift > 0) || (shift == 63 && b > 1)) {
+                    throw new IOException("Not a canonical transaction encoding");
+                }
+                return (value >>> 1) ^ -(value & 1);
+            }
+        }
+        throw new IOException("Varint too long");
+    }
+
+    /**
+     * @return ID of the transaction, the digest of its bytes computed on first call
+     */
+    public TID getID() {
+        if (id == null) {
+            id = new TID(Hash.of(data.duplicate()));
+        }
+        return id;
+    }
+
+    /**
+     * @return version of the encoding, 1 or 2
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * @return true if outputs are compressed, see TransactionBuilder.compressOutputs
+     */
+    public boolean hasCompressedOutputs() {
+        return packed;
+    }
+
+    /**
+     * @return length of the serialized transaction
+     */
+    public int size() {
+        return data.limit();
+    }
+
+    public int getInputCount() {
+        return inputs.length / 2;
+    }
+
+    public TID getInput(int i) {
+        if (array != null) {
+            checkIndex(inputs, i);
+            return TID.createFromArray(array, inputs[2 * i]);
+        }
+        byte[] digest = new byte[DIGEST];
+        slice(inputs, i).get(digest);
+        return new TID(digest);
+    }
+
+    public int getOutputCount() {
+        return outputs.length / 2;
+    }
+
+    /**
+     * @param i index of an output
+     * @return read only slice of the output, or of its decompressed copy if it was compressed
+     * @throws IllegalStateException if a compressed output is corrupt
+     */
+    public ByteBuffer getOutput(int i) {
+        ByteBuffer output = slice(outputs, i);
+        if (!packed) {
+            return output;
+        }
+        if (output.get(0) == TransactionCodec.STORED) {
+            output.position(1);
+            return output.slice();
+        }
+        return ByteBuffer.wrap(unpack(copy(outputs, i))).asReadOnlyBuffer();
+    }
+
+    public int getEndorserCount() {
+        return endorsers.length / 2;
+    }
+
+    /**
+     * @param i index of an endorser
+     * @return read only slice of the endorser's signature
+     */
+    public ByteBuffer getSignature(int i) {
+        return slice(endorsers, i);
+    }
+
+    public List<TID> getInputs() {
+        return getInputs(null);
+    }
+
+    /**
+     * @param pool canonical TIDs, may be null to not intern
+     * @return copy of the inputs
+     */
+    public List<TID> getInputs(HashPool<TID> pool) {
+        List<TID> result = new ArrayList<>(getInputCount());
+        for (int i = 0; i < getInputCount(); i++) {
+            TID input = getInput(i);
+            result.add(pool == null ? input : pool.intern(input));
+        }
+        return result;
+    }
+
+    /**
+     * @return copy of the outputs, decompressed
+     * @throws IllegalStateException if a compressed output is corrupt
+     */
+    public List<byte[]> getOutputs() {
+        List<byte[]> result = new ArrayList<>(getOutputCount());
+        for (int i = 0; i < getOutputCount(); i++) {
+            result.add(copy(outputs, i));
+        }
+        if (packed) {
+            for (int i = 0; i < result.size(); i++) {
+                result.set(i, unpack(result.get(i)));
+            }
+        }
+        return result;
+    }
+
+    // Read only lists backed by the encoding, for the content of Transaction. Items are created on first access
+    // and kept, so every get of an index returns the same instance. Inputs are read in place if the view has a
+    // backing array, outputs and signatures copied.
+
+    List<TID> inputList() {
+        return new Items<TID>(getInputCount()) {
+            @Override
+            TID decode(int i) {
+                return getInput(i);
+            }
+        };
+    }
+
+    // outputs as encoded, compressed if hasCompressedOutputs
+    List<byte[]> outputList() {
+        return new Items<byte[]>(getOutputCount()) {
+            @Override
+            byte[] decode(int i) {
+                return copy(outputs, i);
+            }
+        };
+    }
+
+    List<Endorser> endorserList() {
+        return new Items<Endorser>(getEndorserCount()) {
+            @Override
+            Endorser decode(int i) {
+                return new Endorser(copy(endorsers, i));
+            }
+        };
+    }
+
+    private abstract static class Items<T> extends AbstractList<T> implements RandomAccess {
+        // items created so far, shared by threads
+        private final AtomicReferenceArray<T> items;
+
+        Items(int size) {
+            items = new AtomicReferenceArray<>(size);
+        }
+
+        abstract T decode(int i);
+
+        @Override
+        public T get(int i) {
+            T item = items.get(i);
+            if (item == null) {
+                // the first item stored is kept if threads race
+                items.compareAndSet(i, null, decode(i));
+                item = items.get(i);
+            }
+            return item;
+        }
+
+        @Override
+        public int size() {
+            return items.length();
+        }
+    }
+
+    private static byte[] unpack(byte[] output) {
+        try {
+            return TransactionCodec.unpack(output);
+        } catch (IOException e) {
+            throw new IllegalStateException("Corrupt compressed output", e);
+        }
+    }
+
+    /**
+     * @return copy of the endorsers
+     */
+    public List<Endorser> getEndorsers() {
+        List<Endorser> result = new ArrayList<>(getEndorserCount());
+        for (int i = 0; i < getEndorserCount(); i++) {
+            result.add(new Endorser(copy(endorsers, i)));
+        }
+        return result;
+    }
+
+    /**
+     * @return the serialized transaction, the backing array if the view spans all of it
+     */
+    byte[] array() {
+        if (array != null) {
+            return array;
+        }
+        byte[] copy = new byte[data.limit()];
+        data.duplicate().get(copy);
+        return copy;
+    }
+
+    private static void checkIndex(int[] items, int i) {
+        if (i < 0 || 2 * i >= items.length) {
+            throw new IndexOutOfBoundsException("Index " + i + " of " + items.length / 2 + " items");
+        }
+    }
+
+    private ByteBuffer slice(int[] items, int i) {
+        checkIndex(items, i);
+        ByteBuffer slice = data.duplicate();
+        slice.limit(items[2 * i] + items[2 * i + 1]).position(items[2 * i]);
+        return slice.slice();
+    }
+
+    private byte[] copy(int[] items, int i) {
+        byte[] copy = new byte[items[2 * i + 1]];
+        slice(items, i).get(copy);
+        return copy;
+    }
+}
@@ -0,0 +1,136 @@
+/**
+ * Copyright 2016 Digital Asset Holdings, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.transaction;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.util.zip.CRC32;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Writes a batch of transactions to a channel, e.g. a replay file or a bulk import, in the framed format read by
+ * TransactionReader. All integers are big endian.
+ * <pre>
+ * header: magic "HLTX", version 1, flags (bit 0: frames carry a CRC32)
+ * frame:  length (4 bytes), the canonical encoding of a transaction, CRC32 of the encoding (4 bytes, if flagged)
+ * </pre>
+ * The file ends after the last frame. Not thread safe.
+ *
+ * @see TransactionReader
+ * @see Transaction#toByteArray()
+ */
+public class TransactionWriter implements Closeable, Flushable {
+    static final byte[] MAGIC = {'H', 'L', 'T', 'X'};
+    static final byte VERSION = 1;
+    static final byte CRC32_FLAG = 1;
+    static final int HEADER_SIZE = MAGIC.length + 2;
+    static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * maximum length of a transaction in a frame
+     */
+    public static final int MAX_FRAME_LENGTH = 1 << 26;
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    // null if the frames carry no checksum
+    private final CRC32 crc;
+
+    /**
+     * @param channel   channel to write to, closed with the writer
+     * @param checksums true to add a CRC32 to every frame
+     */
+    public TransactionWriter(WritableByteChannel channel, boolean checksums) {
+        this.channel = channel;
+        this.crc = checksums ? new CRC32() : null;
+        buffer.put(MAGIC).put(VERSION).put(checksums ? CRC32_FLAG : 0);
+    }
+
+    /**
+     * Create or replace a file of transactions
+     *
+     * @param path      the file
+     * @param checksums true to add a CRC32 to every frame
+     * @return writer to the file
+     * @throws IOException if the file can not be opened
+     */
+    public static TransactionWriter create(Path path, boolean checksums) throws IOException {
+        return new TransactionWriter(FileChannel.open(path, CREATE, TRUNCATE_EXISTING, WRITE), checksums);
+    }
+
+    /**
+     * Append a transaction. The frame is buffered, flush or close to write it to the channel.
+     *
+     * @param t a transaction
+     * @throws IOException if the channel fails or the transaction is longer than MAX_FRAME_LENGTH
+     */
+    public void write(Transaction t) throws IOException {
+        byte[] bytes = t.toByteArray();
+        if (bytes.length > MAX_FRAME_LENGTH) {
+            throw new IOException("Transaction of " + bytes.length + " bytes exceeds the frame length");
+        }
+        if (buffer.remaining() < 4 + bytes.length + 4) {
+            writeBuffer();
+        }
+        buffer.putInt(bytes.length);
+        if (bytes.length <= buffer.remaining()) {
+            buffer.put(bytes);
+        } else {
+            // larger than the buffer, written as it is
+            writeBuffer();
+            writeFully(ByteBuffer.wrap(bytes));
+        }
+        if (crc != null) {
+            crc.reset();
+            crc.update(bytes);
+            buffer.putInt((int) crc.getValue());
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writeBuffer();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            writeBuffer();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void writeBuffer() throws IOException {
+        buffer.flip();
+        writeFully(buffer);
+        buffer.clear();
+    }
+
+    private void writeFully(ByteBuffer data) throws IOException {
+        while (data.hasRemaining()) {
+            channel.write(data);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/**
+ * Copyright 2016 Digital Asset Holdings, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.api;
+
+import org.hyperledger.block.BID;
+import org.hyperledger.block.Header;
+import org.hyperledger.block.HyperledgerHeader;
+import org.hyperledger.common.Hash;
+import org.hyperledger.common.HashAlgorithm;
+import org.hyperledger.merkletree.MerkleProof;
+import org.hyperledger.merkletree.MerkleRoot;
+import org.hyperledger.merkletree.MerkleTree;
+import org.hyperledger.transaction.TransactionTest;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TrunkAccumulatorTest {
+
+    @Test
+    public void proveHeight() {
+        TrunkAccumulator accumulator = new TrunkAccumulator();
+        List<HLAPIBlock> blocks = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            blocks.add(observed());
+        }
+        accumulator.trunkUpdate(blocks);
+        assertEquals(50, accumulator.size());
+        MerkleRoot root = accumulator.getRoot();
+        for (int h = 0; h < blocks.size(); h++) {
+            Header header = blocks.get(h).getHeader();
+            MerkleProof proof = accumulator.createProof(h);
+            assertTrue(TrunkAccumulator.verify(header, h, proof, root));
+            assertFalse(TrunkAccumulator.verify(header, h + 1, proof, root));
+            assertTrue(proof.getSiblings().size() <= 6);
+        }
+    }
+
+    @Test
+    public void reorganisation() {
+        TrunkAccumulator accumulator = new TrunkAccumulator();
+        List<HLAPIBlock> chain = chain(BID.INVALID, 20);
+        accumulator.trunkUpdate(chain);
+        // a longer fork from block 14 replaces blocks 15 to 19
+        List<HLAPIBlock> fork = chain(linkTo(chain.get(14)), 7);
+        accumulator.trunkUpdate(fork.subList(0, 3));
+        accumulator.trunkUpdate(fork.subList(3, 7));
+        assertEquals(22, accumulator.size());
+        assertEquals(digest(fork.get(0)), accumulator.getDigest(15));
+
+        TrunkAccumulator expected = new TrunkAccumulator();
+        expected.trunkUpdate(chain.subList(0, 15));
+        expected.trunkUpdate(fork);
+        assertEquals(expected.getRoot(), accumulator.getRoot());
+        assertFalse(TrunkAccumulator.verify(chain.get(16).getHeader(), 16, accumulator.createProof(16),
+                accumulator.getRoot()));
+    }
+
+    @Test
+    public void unlinkedBlocksAreAppended() {
+        TrunkAccumulator accumulator = new TrunkAccumulator();
+        HLAPIBlock block = observed();
+        for (int i = 0; i < 3; i++) {
+            accumulator.trunkUpdate(Collections.singletonList(block));
+        }
+        assertEquals(3, accumulator.size());
+        assertEquals(digest(block), accumulator.getDigest(2));
+    }
+
+    private static List<HLAPIBlock> chain(BID previous, int n) {
+        List<HLAPIBlock> blocks = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            HLAPIBlock block = block(HyperledgerHeader.create().previousID(previous));
+            blocks.add(block);
+            previous = linkTo(block);
+        }
+        return blocks;
+    }
+
+    // a previous ID that links to block in the accumulator
+    private static BID linkTo(HLAPIBlock block) {
+        return new BID(digest(block));
+    }
+
+    private static Hash digest(HLAPIBlock block) {
+        return TrunkAccumulator.digest(block.getHeader(), HashAlgorithm.getDefault());
+    }
+
+    // a block with a header as built by GRPCObserver, without ID and previous ID set
+    private static HLAPIBlock observed() {
+        return block(HyperledgerHeader.create());
+    }
+
+    private static HLAPIBlock block(HyperledgerHeader.Builder header) {
+        HLAPITransaction transaction = new HLAPITransaction(TransactionTest.randomTx(), BID.INVALID);
+        return new HLAPIBlock.Builder()
+                .header(header.merkleRoot(MerkleTree.computeMerkleRoot(Collections.singletonList(transaction))).build())
+                .transactions(transaction)
+                .build();
+    }
+}
@@ -21,6 +21,7 @@ import org.hyperledger.api.HLAPIException;
 import org.hyperledger.api.HLAPITransaction;
 import org.hyperledger.transaction.TID;
 import org.hyperledger.transaction.Transaction;
+import org.hyperledger.transaction.TransactionBuilder;
 import org.hyperledger.transaction.TransactionTest;
 import org.junit.Before;
 import org.junit.Test;
@@ -28,6 +29,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
 import java.util.concurrent.ExecutionException;
 
 import static org.junit.Assert.*;
@@ -125,6 +128,15 @@ public class GRPCClientTest {
         tx2.get();
     }
 
+    @Test
+    public void encodesBase64() {
+        for (Transaction tx : Arrays.asList(TransactionTest.randomTx(), new TransactionBuilder().build(),
+                new TransactionBuilder().output(new byte[1]).build(), new TransactionBuilder().output(new byte[2]).build())) {
+            assertEquals(Base64.getEncoder().encodeToString(tx.toByteArray()),
+                    GRPCClient.encode(tx.toByteArray()).toStringUtf8());
+        }
+    }
+
     @Test
     public void rejectListener() throws HLAPIException, InterruptedException, ExecutionException {
         class InvalidTransaction extends Transaction {
@@ -0,0 +1,127 @@
+/**
+ * Copyright 2016 Digital Asset Holdings, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.block;
+
+import org.hyperledger.api.HLAPIBlock;
+import org.hyperledger.api.HLAPITransaction;
+import org.hyperledger.merkletree.MerkleMultiProof;
+import org.hyperledger.transaction.TID;
+import org.hyperledger.transaction.Transaction;
+import org.hyperledger.transaction.TransactionTest;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class BlockTest {
+
+    @Test
+    public void pruneKeepsMerkleRoot() {
+        for (int n = 1; n <= 40; n++) {
+            Block block = Block.create().transactions(randomTransactions(n)).build();
+            assertTrue(block.hasValidMerkleRoot());
+
+            Set<TID> kept = new HashSet<>();
+            for (int i = 0; i < n; i += 7) {
+                kept.add(block.getTransaction(i).getID());
+            }
+            Block pruned = block.prune(t -> kept.contains(t.getID()));
+            assertEquals(block.getID(), pruned.getID());
+            assertTrue("transactions " + n, pruned.hasValidMerkleRoot());
+            assertEquals(kept.size(), pruned.getTransactions().size());
+            assertEquals(kept.size() < n, pruned.isPruned());
+            assertTrue(MerkleMultiProof.verify(kept, pruned.getMerkleMultiProof(kept), block.getHeader().getMerkleRoot()));
+
+            // pruning again keeps the root as well
+            Block none = pruned.prune(t -> false);
+            assertTrue(none.hasValidMerkleRoot());
+            assertEquals(1, none.getMerkleTreeNodes().size());
+        }
+    }
+
+    @Test
+    public void retainedSize() {
+        Block block = Block.create().transactions(randomTransactions(1000)).build();
+        Block pruned = block.prune(t -> false);
+        Block one = block.prune(t -> t == block.getTransaction(500));
+        assertTrue(one.getRetainedSize() < block.getRetainedSize());
+        assertTrue(pruned.getRetainedSize() < one.getRetainedSize());
+        // one transaction and a pruned node per level
+        assertTrue(one.getMerkleTreeNodes().size() <= 11);
+    }
+
+    @Test
+    public void pruneHLAPIBlock() {
+        List<HLAPITransaction> transactions = new ArrayList<>();
+        for (Transaction t : randomTransactions(5)) {
+            transactions.add(new HLAPITransaction(t, BID.INVALID));
+        }
+        HLAPIBlock block = new HLAPIBlock.Builder().height(7).transactions(transactions).build();
+        HLAPIBlock pruned = block.prune(t -> t.equals(transactions.get(3)));
+        assertEquals(7, pruned.getHeight());
+        assertEquals(Collections.singletonList(transactions.get(3)), pruned.getTransactions());
+        assertTrue(pruned.hasValidMerkleRoot());
+    }
+
+    @Test
+    public void builderListAlteredInPlace() {
+        List<Transaction> replacements = randomTransactions(2);
+        Block block = new Block.Builder() {
+            @Override
+            public Block build() {
+                transactions.set(1, replacements.get(0));
+                Collections.swap(transactions, 0, 2);
+                transactions.remove(3);
+                transactions.add(replacements.get(1));
+                return super.build();
+            }
+        }.transactions(randomTransactions(4)).build();
+        assertEquals(4, block.getTransactions().size());
+        assertTrue(block.hasValidMerkleRoot());
+
+        List<HLAPITransaction> transactions = new ArrayList<>();
+        for (Transaction t : randomTransactions(3)) {
+            transactions.add(new HLAPITransaction(t, BID.INVALID));
+        }
+        HLAPIBlock hlapiBlock = new HLAPIBlock.Builder() {
+            @Override
+            public HLAPIBlock build() {
+                Collections.swap(this.transactions, 0, 1);
+                return super.build();
+            }
+        }.transactions(transactions).build();
+        assertTrue(hlapiBlock.hasValidMerkleRoot());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void noSingleProofOfPrunedBlock() {
+        Block block = Block.create().transactions(randomTransactions(3)).build();
+        block.prune(t -> t == block.getTransaction(0)).getMerkleProof(block.getTransaction(0).getID());
+    }
+
+    private static List<Transaction> randomTransactions(int n) {
+        List<Transaction> transactions = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            transactions.add(TransactionTest.randomTx());
+        }
+        return transactions;
+    }
+}
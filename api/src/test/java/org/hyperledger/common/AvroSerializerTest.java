@@ -0,0 +1,135 @@
+/**
+ * Copyright 2016 Digital Asset Holdings, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.common;
+
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.avro.specific.SpecificDatumWriter;
+import org.hyperledger.transaction.SerializedTransaction;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class AvroSerializerTest {
+
+    private static final Random random = new Random();
+
+    @Test
+    public void matchesFreshEncoder() throws IOException {
+        for (int i = 0; i < 20; i++) {
+            SerializedTransaction t = randomRecord(random.nextInt(5000));
+            byte[] data = AvroSerializer.serialize(t);
+            assertArrayEquals(serializeFresh(t), data);
+            assertEquals(t, AvroSerializer.deserialize(data, SerializedTransaction.getClassSchema()));
+        }
+    }
+
+    @Test
+    public void streamsAndBuffers() throws IOException {
+        SerializedTransaction t = randomRecord(300);
+        byte[] expected = AvroSerializer.serialize(t);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        AvroSerializer.serialize(t, out);
+        assertArrayEquals(expected, out.toByteArray());
+        assertEquals(t, AvroSerializer.deserialize(new ByteArrayInputStream(expected), SerializedTransaction.getClassSchema()));
+
+        for (ByteBuffer buffer : new ByteBuffer[]{ByteBuffer.allocate(1000), ByteBuffer.allocateDirect(1000)}) {
+            buffer.position(7);
+            assertEquals(expected.length, AvroSerializer.serialize(t, buffer));
+            assertEquals(7 + expected.length, buffer.position());
+            buffer.flip().position(7);
+            assertEquals(t, AvroSerializer.deserialize(buffer, SerializedTransaction.getClassSchema()));
+            assertEquals(7, buffer.position());
+        }
+    }
+
+    @Test
+    public void overflowWritesNothing() throws IOException {
+        SerializedTransaction t = randomRecord(300);
+        ByteBuffer buffer = ByteBuffer.allocate(100);
+        try {
+            AvroSerializer.serialize(t, buffer);
+            fail();
+        } catch (BufferOverflowException e) {
+            assertEquals(0, buffer.position());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsTrailingBytes() throws IOException {
+        byte[] data = AvroSerializer.serialize(randomRecord(10));
+        AvroSerializer.deserialize(ByteBuffer.wrap(Arrays.copyOf(data, data.length + 1)), SerializedTransaction.getClassSchema());
+    }
+
+    @Test
+    public void threads() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> {
+                    for (int j = 0; j < 200; j++) {
+                        SerializedTransaction t = randomRecord(random.nextInt(2000));
+                        byte[] data = AvroSerializer.serialize(t);
+                        if (!t.equals(AvroSerializer.deserialize(data, SerializedTransaction.getClassSchema()))) {
+                            return false;
+                        }
+                    }
+                    return true;
+                }));
+            }
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static byte[] serializeFresh(SerializedTransaction t) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryEncoder encoder = EncoderFactory.get().binaryEncoder(out, null);
+        new SpecificDatumWriter<SerializedTransaction>(t.getSchema()).write(t, encoder);
+        encoder.flush();
+        return out.toByteArray();
+    }
+
+    private static SerializedTransaction randomRecord(int outputSize) {
+        List<ByteBuffer> inputs = new ArrayList<>();
+        for (int i = random.nextInt(4); i > 0; i--) {
+            inputs.add(ByteBuffer.wrap(HashTest.randomBytes(32)));
+        }
+        return SerializedTransaction.newBuilder()
+                .setInputs(inputs)
+                .setOutputs(Arrays.asList(ByteBuffer.wrap(HashTest.randomBytes(outputSize))))
+                .setEndorsers(Arrays.asList(ByteBuffer.wrap(HashTest.randomBytes(72))))
+                .build();
+    }
+}
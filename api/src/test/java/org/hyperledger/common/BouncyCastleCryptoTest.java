@@ -0,0 +1,50 @@
+/**
+ * Copyright 2016 Digital Asset Holdings, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.common;
+
+import org.junit.Test;
+
+import java.math.BigInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BouncyCastleCryptoTest {
+
+    private static final BouncyCastleCrypto crypto = new BouncyCastleCrypto();
+
+    @Test
+    public void signingKeyMatchesSign() {
+        PrivateKey key = PrivateKey.createNew(crypto);
+        SigningKey signingKey = crypto.signingKey(key.toByteArray());
+        for (int i = 0; i < 10; i++) {
+            byte[] hash = HashTest.randomBytes(32);
+            byte[] signature = signingKey.sign(hash);
+            assertArrayEquals(crypto.sign(hash, key.toByteArray()), signature);
+            assertArrayEquals(signature, key.sign(hash));
+            assertTrue(key.getPublic().verify(hash, signature));
+        }
+    }
+
+    @Test
+    public void publicKeyFromComb() {
+        for (int i = 0; i < 10; i++) {
+            byte[] privateKey = crypto.createNewPrivateKey();
+            byte[] expected = BouncyCastleCrypto.curve.getG().multiply(new BigInteger(privateKey)).getEncoded(true);
+            assertArrayEquals(expected, crypto.getPublicFor(privateKey));
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/**
+ * Copyright 2016 Digital Asset Holdings, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.common;
+
+import org.bouncycastle.crypto.digests.SkeinDigest;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class HashAlgorithmTest {
+
+    @Test
+    public void defaultIsSha256() {
+        byte[] data = HashTest.randomBytes(100);
+        assertEquals(HashAlgorithm.SHA256, HashAlgorithm.getDefault());
+        assertArrayEquals(Hash.hash(data), Hash.of(data).toByteArray());
+    }
+
+    @Test
+    public void sha512t256KnownAnswer() {
+        Hash hash = Hash.of("abc".getBytes(StandardCharsets.US_ASCII), HashAlgorithm.SHA512_256);
+        assertEquals("53048e2681941ef99b2e29b76b4c7dabe4c2d0c634fc6d46e0e2f13107e7af23",
+                ByteUtils.toHex(hash.toByteArray()));
+    }
+
+    @Test
+    public void skeinMatchesBouncyCastle() {
+        byte[] data = HashTest.randomBytes(1000);
+        SkeinDigest digest = new SkeinDigest(SkeinDigest.SKEIN_512, 256);
+        digest.update(data, 0, data.length);
+        byte[] expected = new byte[32];
+        digest.doFinal(expected, 0);
+
+        assertArrayEquals(expected, Hash.of(data, HashAlgorithm.SKEIN_512_256).toByteArray());
+    }
+
+    @Test
+    public void versions() {
+        for (HashAlgorithm algorithm : HashAlgorithm.values()) {
+            assertEquals(algorithm, HashAlgorithm.fromVersion(algorithm.getVersion()));
+        }
+    }
+
+    @Test
+    public void algorithmsDiffer() {
+        byte[] data = HashTest.randomBytes(100);
+        Hash a = Hash.of(data, HashAlgorithm.SHA256);
+        Hash b = Hash.of(data, HashAlgorithm.SHA512_256);
+        Hash c = Hash.of(data, HashAlgorithm.SKEIN_512_256);
+        assertNotEquals(a, b);
+        assertNotEquals(b, c);
+        assertNotEquals(Hash.merge(a, b, HashAlgorithm.SHA256), Hash.merge(a, b, HashAlgorithm.SHA512_256));
+    }
+
+    @Test
+    public void copyKeepsIntermediateState() {
+        byte[] data = HashTest.randomBytes(200);
+        for (HashAlgorithm algorithm : HashAlgorithm.values()) {
+            HashFunction function = algorithm.newFunction();
+            function.update(data, 0, 100);
+            HashFunction copy = function.copy();
+            function.update(data, 100, 100);
+            copy.update(data, 100, 100);
+            byte[] a = new byte[32];
+            byte[] b = new byte[32];
+            function.digest(a, 0);
+            copy.digest(b, 0);
+            assertArrayEquals(a, b);
+            assertArrayEquals(Hash.of(data, algorithm).toByteArray(), a);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/**
+ * Copyright 2016 Digital Asset Holdings, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.common;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class HashEngineTest {
+
+    @Test
+    public void sliceMatchesMessageDigest() throws NoSuchAlgorithmException {
+        byte[] data = HashTest.randomBytes(1000);
+        byte[] out = new byte[40];
+        HashEngine.sha256(data, 10, 500, out, 8);
+
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        digest.update(data, 10, 500);
+        assertArrayEquals(digest.digest(), Arrays.copyOfRange(out, 8, 40));
+    }
+
+    @Test
+    public void batchesMatchSingleCalls() {
+        byte[] pairs = HashTest.randomBytes(5 * 64);
+        byte[] merged = new byte[5 * 32];
+        HashEngine.mergeAll(HashAlgorithm.SHA256, pairs, 0, merged, 0, 5);
+        byte[] expected = new byte[32];
+        for (int i = 0; i < 5; i++) {
+            HashEngine.merge(HashAlgorithm.SHA256, pairs, 64 * i, pairs, 64 * i + 32, expected, 0);
+            assertArrayEquals(expected, Arrays.copyOfRange(merged, 32 * i, 32 * i + 32));
+        }
+
+        List<byte[]> messages = Arrays.asList(HashTest.randomBytes(0), HashTest.randomBytes(55), HashTest.randomBytes(64),
+                HashTest.randomBytes(1000));
+        byte[] digests = new byte[messages.size() * 32];
+        HashEngine.hashAll(HashAlgorithm.SHA256, messages, digests, 0);
+        for (int i = 0; i < messages.size(); i++) {
+            assertArrayEquals(Hash.hash(messages.get(i)), Arrays.copyOfRange(digests, 32 * i, 32 * i + 32));
+        }
+    }
+
+    @Test
+    public void prefixMatchesWholeMessage() {
+        byte[] data = HashTest.randomBytes(1000);
+        for (HashAlgorithm algorithm : HashAlgorithm.values()) {
+            HashPrefix prefix = new HashPrefix(algorithm, data, 0, 300);
+            byte[] expected = new byte[32];
+            byte[] out = new byte[32];
+            for (int length : new int[]{300, 301, 1000}) {
+                HashEngine.hash(algorithm, data, 0, length, expected, 0);
+                prefix.hash(data, 300, length - 300, out, 0);
+                assertArrayEquals(expected, out);
+            }
+            assertArrayEquals(expected, prefix.hashMessage(data).toByteArray());
+        }
+    }
+
+    @Test
+    public void buffersMatchArrays() {
+        byte[] data = HashTest.randomBytes(300);
+        byte[] expected = Hash.hash(data);
+
+        ByteBuffer heap = ByteBuffer.wrap(data);
+        ByteBuffer direct = ByteBuffer.allocateDirect(data.length);
+        direct.put(data).flip();
+
+        byte[] out = new byte[32];
+        HashEngine.sha256(heap, out, 0);
+        assertArrayEquals(expected, out);
+        HashEngine.sha256(direct, out, 0);
+        assertArrayEquals(expected, out);
+        assertEquals(0, direct.position());
+
+        ByteBuffer slice = ByteBuffer.wrap(data, 100, 50).slice();
+        HashEngine.sha256(slice, out, 0);
+        assertArrayEquals(Hash.hash(data, 100, 50), out);
+    }
+
+    @Test
+    public void mergeMatchesDoubleDigest() throws NoSuchAlgorithmException {
+        Hash a = Hash.of(HashTest.randomBytes(32));
+        Hash b = Hash.of(HashTest.randomBytes(32));
+
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        digest.update(a.toByteArray());
+        digest.update(b.toByteArray());
+        byte[] expected = digest.digest(digest.digest());
+
+        assertArrayEquals(expected, Hash.merge(a, b).toByteArray());
+
+        byte[] concatenated = new byte[64];
+        System.arraycopy(a.toByteArray(), 0, concatenated, 0, 32);
+        System.arraycopy(b.toByteArray(), 0, concatenated, 32, 32);
+        byte[] out = new byte[32];
+        HashEngine.doubleSha256(concatenated, 0, 64, out, 0);
+        assertArrayEquals(expected, out);
+    }
+
+    @Test
+    public void mergeInPlace() {
+        Hash a = Hash.of(HashTest.randomBytes(32));
+        byte[] buffer = a.toByteArray();
+        HashEngine.merge(buffer, 0, buffer, 0, buffer, 0);
+        assertEquals(Hash.merge(a, a), new Hash(buffer));
+    }
+}
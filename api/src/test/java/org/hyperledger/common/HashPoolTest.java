@@ -0,0 +1,119 @@
+/**
+ * Copyright 2016 Digital Asset Holdings, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.common;
+
+import org.hyperledger.transaction.TID;
+import org.hyperledger.transaction.Transaction;
+import org.hyperledger.transaction.TransactionBuilder;
+import org.hyperledger.transaction.TransactionTest;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class HashPoolTest {
+
+    @Test
+    public void internsEqualDigests() {
+        HashPool<TID> pool = new HashPool<>();
+        byte[] digest = HashTest.randomBytes(32);
+        TID first = new TID(digest);
+        assertSame(first, pool.intern(first));
+        assertSame(first, pool.intern(new TID(digest.clone())));
+        assertNotSame(first, pool.intern(new TID(HashTest.randomBytes(32))));
+        assertEquals(2, pool.size());
+        assertNull(pool.intern(null));
+    }
+
+    @Test
+    public void growsBeyondInitialCapacity() {
+        HashPool<TID> pool = new HashPool<>(1);
+        List<TID> ids = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            ids.add(pool.intern(new TID(HashTest.randomBytes(32))));
+        }
+        for (TID id : ids) {
+            assertSame(id, pool.intern(new TID(id.toByteArray())));
+        }
+        assertEquals(ids.size(), pool.size());
+    }
+
+    @Test
+    public void doesNotRetainUnreferenced() throws InterruptedException {
+        HashPool<TID> pool = new HashPool<>();
+        for (int i = 0; i < 10000; i++) {
+            pool.intern(new TID(HashTest.randomBytes(32)));
+        }
+        for (int i = 0; i < 10 && pool.size() > 0; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertEquals(0, pool.size());
+    }
+
+    @Test
+    public void concurrentIntern() throws Exception {
+        HashPool<TID> pool = new HashPool<>(4);
+        List<byte[]> digests = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            digests.add(HashTest.randomBytes(32));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<List<TID>>> results = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            results.add(executor.submit(() -> {
+                List<TID> interned = new ArrayList<>();
+                for (byte[] digest : digests) {
+                    interned.add(pool.intern(new TID(digest)));
+                }
+                return interned;
+            }));
+        }
+        List<TID> first = results.get(0).get();
+        for (Future<List<TID>> result : results) {
+            List<TID> other = result.get();
+            for (int i = 0; i < first.size(); i++) {
+                assertSame(first.get(i), other.get(i));
+            }
+        }
+        executor.shutdown();
+    }
+
+    @Test
+    public void decodedTransactionsShareInputs() throws IOException {
+        HashPool<TID> pool = new HashPool<>();
+        Transaction source = TransactionTest.randomTx();
+        Transaction spend1 = new TransactionBuilder().input(source.getID()).output(HashTest.randomBytes(10)).build();
+        Transaction spend2 = new TransactionBuilder().input(source.getID()).output(HashTest.randomBytes(10)).build();
+
+        Transaction decodedSource = Transaction.fromByteArray(source.toByteArray(), pool);
+        List<byte[]> spends = new ArrayList<>();
+        spends.add(spend1.toByteArray());
+        spends.add(spend2.toByteArray());
+        List<Transaction> decoded = Transaction.fromByteArrays(spends, pool);
+
+        assertEquals(source, decodedSource);
+        assertEquals(spend1.getID(), decoded.get(0).getID());
+        assertSame(decodedSource.getID(), decoded.get(0).getInputs().get(0));
+        assertSame(decodedSource.getID(), decoded.get(1).getInputs().get(0));
+    }
+}
@@ -0,0 +1,81 @@
+/**
+ * Copyright 2016 Digital Asset Holdings, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.common;
+
+import org.hyperledger.block.BID;
+import org.hyperledger.transaction.TID;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class HashTest {
+
+    private static final Random random = new Random();
+
+    @Test
+    public void arrayRoundTrip() {
+        byte[] digest = randomBytes(32);
+        Hash hash = new Hash(digest);
+
+        assertArrayEquals(digest, hash.toByteArray());
+        assertArrayEquals(digest, hash.unsafeGetArray());
+        assertArrayEquals(digest, Hash.createFromSafeArray(digest).toByteArray());
+        assertArrayEquals(digest, new TID(hash).toByteArray());
+
+        byte[] packed = new byte[96];
+        System.arraycopy(digest, 0, packed, 40, 32);
+        assertEquals(hash, Hash.createFromArray(packed, 40));
+
+        byte[] out = new byte[32];
+        hash.copyTo(out, 0);
+        assertArrayEquals(digest, out);
+    }
+
+    @Test
+    public void hexRoundTrip() {
+        Hash hash = Hash.of(randomBytes(100));
+        assertEquals(hash, new Hash(hash.toString()));
+        assertEquals(hash.toBigInteger(), new Hash(hash.toString()).toBigInteger());
+    }
+
+    @Test
+    public void equality() {
+        byte[] digest = randomBytes(32);
+        Hash hash = new Hash(digest);
+        assertEquals(hash, new Hash(digest.clone()));
+        assertEquals(hash.hashCode(), new Hash(digest.clone()).hashCode());
+        assertNotEquals(new TID(hash), new BID(hash));
+
+        for (int i = 0; i < 32; i++) {
+            byte[] changed = digest.clone();
+            changed[i] ^= 1;
+            assertNotEquals(hash, new Hash(changed));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsShortDigest() {
+        Hash.createFromSafeArray(new byte[31]);
+    }
+
+    public static byte[] randomBytes(int length) {
+        byte[] payload = new byte[length];
+        random.nextBytes(payload);
+        return payload;
+    }
+}
@@ -0,0 +1,122 @@
+/**
+ * Copyright 2016 Digital Asset Holdings, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.common;
+
+import org.apache.commons.codec.binary.Hex;
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.math.BigInteger;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class TextCodecTest {
+
+    private static final char[] b58 = "123456789ABCDEFGHJKLMNPQRSTUVWXYZabcdefghijkmnopqrstuvwxyz".toCharArray();
+
+    @Test
+    public void hexMatchesCommonsCodec() throws Exception {
+        for (int length = 0; length < 100; length++) {
+            byte[] data = HashTest.randomBytes(length);
+            String expected = new String(Hex.encodeHex(data));
+            assertEquals(expected, TextCodec.toHex(data));
+            assertEquals(expected, TextCodec.appendHex(data, 0, length, new StringBuilder()).toString());
+            StringWriter writer = new StringWriter();
+            TextCodec.appendHex(data, 0, length, writer);
+            assertEquals(expected, writer.toString());
+            assertArrayEquals(data, TextCodec.fromHex(expected));
+            assertArrayEquals(data, TextCodec.fromHex(expected.toUpperCase()));
+        }
+    }
+
+    @Test
+    public void rejectsInvalidHex() {
+        assertNull(TextCodec.fromHex("abc"));
+        assertNull(TextCodec.fromHex("0g"));
+        assertNull(TextCodec.fromHex("0é"));
+        assertNull(ByteUtils.fromHex("xx"));
+    }
+
+    @Test
+    public void base58MatchesBigInteger() {
+        for (int length = 0; length < 100; length++) {
+            byte[] data = HashTest.randomBytes(length);
+            if (length > 2) {
+                data[0] = 0;
+                data[1] = length % 3 == 0 ? 0 : data[1];
+            }
+            String expected = bigIntegerBase58(data);
+            assertEquals(expected, TextCodec.toBase58(data));
+            assertArrayEquals(expected, data, TextCodec.fromBase58(expected));
+        }
+        assertEquals("", TextCodec.toBase58(new byte[0]));
+        assertEquals("111", TextCodec.toBase58(new byte[3]));
+        assertArrayEquals(new byte[3], TextCodec.fromBase58("111"));
+        assertArrayEquals(new byte[]{(byte) 0xff}, TextCodec.fromBase58("5Q"));
+    }
+
+    @Test
+    public void rejectsInvalidBase58() {
+        assertNull(TextCodec.fromBase58("abc0"));
+        assertNull(TextCodec.fromBase58("Il"));
+    }
+
+    @Test
+    public void hashText() {
+        for (int i = 0; i < 100; i++) {
+            byte[] digest = HashTest.randomBytes(32);
+            Hash hash = new Hash(digest);
+
+            String hex = new String(Hex.encodeHex(ByteUtils.reverse(digest.clone())));
+            assertEquals(hex, hash.toString());
+            assertEquals(hash, new Hash(hex));
+            assertEquals(hash, new Hash(hex.toUpperCase()));
+
+            String uuid = String.join("-", hex(digest, 0, 4), hex(digest, 4, 6), hex(digest, 6, 8),
+                    hex(digest, 8, 10), hex(digest, 10, 16));
+            assertEquals(uuid, hash.toUuidString());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonHexHash() {
+        new Hash("z000000000000000000000000000000000000000000000000000000000000000");
+    }
+
+    private static String hex(byte[] data, int from, int to) {
+        return new String(Hex.encodeHex(Arrays.copyOfRange(data, from, to)));
+    }
+
+    // the BigInteger division ByteUtils.toBase58 used before
+    private static String bigIntegerBase58(byte[] b) {
+        int lz = 0;
+        while (lz < b.length && b[lz] == 0) {
+            ++lz;
+        }
+        StringBuilder s = new StringBuilder();
+        BigInteger n = new BigInteger(1, b);
+        while (n.compareTo(BigInteger.ZERO) > 0) {
+            BigInteger[] r = n.divideAndRemainder(BigInteger.valueOf(58));
+            n = r[0];
+            s.append(b58[r[1].intValue()]);
+        }
+        while (lz-- > 0) {
+            s.append('1');
+        }
+        return s.reverse().toString();
+    }
+}
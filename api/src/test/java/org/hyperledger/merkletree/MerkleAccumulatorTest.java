@@ -0,0 +1,80 @@
+/**
+ * Copyright 2016 Digital Asset Holdings, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.merkletree;
+
+import org.hyperledger.api.HLAPIBlock;
+import org.hyperledger.api.HLAPITransaction;
+import org.hyperledger.block.BID;
+import org.hyperledger.block.Block;
+import org.hyperledger.common.Hash;
+import org.hyperledger.common.HashAlgorithm;
+import org.hyperledger.common.HashTest;
+import org.hyperledger.transaction.Transaction;
+import org.hyperledger.transaction.TransactionTest;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class MerkleAccumulatorTest {
+
+    @Test
+    public void matchesComputeMerkleRoot() {
+        for (HashAlgorithm algorithm : new HashAlgorithm[]{HashAlgorithm.SHA256, HashAlgorithm.SHA512_256}) {
+            MerkleAccumulator accumulator = new MerkleAccumulator(algorithm);
+            List<MerkleTreeNode> leaves = new ArrayList<>();
+            for (int n = 1; n <= 300; n++) {
+                MerkleTreeNode leaf = randomLeaf();
+                leaves.add(leaf);
+                accumulator.add(leaf);
+                assertEquals(n, accumulator.size());
+                assertEquals("leaves " + n, MerkleTree.computeMerkleRoot(leaves, algorithm), accumulator.getRoot());
+            }
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void noRootOfNothing() {
+        new MerkleAccumulator().getRoot();
+    }
+
+    @Test
+    public void builders() {
+        List<Transaction> transactions = new ArrayList<>();
+        List<HLAPITransaction> hlapiTransactions = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Transaction t = TransactionTest.randomTx();
+            transactions.add(t);
+            hlapiTransactions.add(new HLAPITransaction(t, BID.INVALID));
+        }
+        MerkleRoot expected = MerkleTree.computeMerkleRoot(transactions);
+
+        Block block = Block.create()
+                .transactions(transactions.subList(0, 2))
+                .transactions(transactions.get(2), transactions.get(3), transactions.get(4))
+                .build();
+        assertEquals(expected, block.getMerkleRoot());
+
+        HLAPIBlock hlapiBlock = new HLAPIBlock.Builder().transactions(hlapiTransactions).build();
+        assertEquals(expected, hlapiBlock.getMerkleRoot());
+    }
+
+    private static MerkleTreeNode randomLeaf() {
+        return new PrunedNode(new Hash(HashTest.randomBytes(32)), 0);
+    }
+}
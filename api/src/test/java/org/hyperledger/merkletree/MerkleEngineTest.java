@@ -0,0 +1,83 @@
+/**
+ * Copyright 2016 Digital Asset Holdings, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.merkletree;
+
+import org.hyperledger.common.Hash;
+import org.hyperledger.common.HashAlgorithm;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+public class MerkleEngineTest {
+
+    @Test
+    public void matchesCompress() {
+        List<MerkleTreeNode> leaves = MerkleProofTest.randomLeaves(70);
+        for (int n = 1; n <= leaves.size(); n++) {
+            List<MerkleTreeNode> nodes = leaves.subList(0, n);
+            assertEquals("leaves " + n, compressRoot(nodes), MerkleEngine.computeRoot(MerkleEngine.pack(nodes), n));
+        }
+    }
+
+    @Test
+    public void prunedNodesAreLeaves() {
+        List<MerkleTreeNode> nodes = new ArrayList<>();
+        for (int i = 0; i < 13; i++) {
+            nodes.add(new PrunedNode(Hash.of(new byte[]{(byte) i}), i % 3));
+        }
+        assertEquals(compressRoot(nodes), MerkleTree.computeMerkleRoot(nodes));
+    }
+
+    @Test
+    public void parallelMatchesSequential() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            List<MerkleTreeNode> leaves = MerkleProofTest.randomLeaves(3 * MerkleEngine.PARALLEL_THRESHOLD + 5);
+            byte[] packed = MerkleEngine.pack(leaves);
+            byte[] copy = packed.clone();
+            ForkJoinPool sequential = new ForkJoinPool(1);
+            for (int n : new int[]{MerkleEngine.PARALLEL_THRESHOLD, MerkleEngine.PARALLEL_THRESHOLD + 1,
+                    2 * MerkleEngine.PARALLEL_THRESHOLD - 1, 2 * MerkleEngine.PARALLEL_THRESHOLD + 1025,
+                    leaves.size()}) {
+                MerkleRoot expected = MerkleEngine.computeRoot(packed, n, HashAlgorithm.SHA256, sequential);
+                assertEquals("leaves " + n, expected, MerkleEngine.computeRoot(packed, n, HashAlgorithm.SHA256, pool));
+            }
+            assertEquals(compressRoot(leaves), MerkleEngine.computeRoot(packed, leaves.size(), HashAlgorithm.SHA256, pool));
+            assertArrayEquals(copy, packed);
+            sequential.shutdown();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsCountBeyondLeaves() {
+        MerkleEngine.computeRoot(new byte[64], 3);
+    }
+
+    // the root computation of MerkleTree before the engine
+    private static MerkleRoot compressRoot(List<? extends MerkleTreeNode> nodes) {
+        List<MerkleTreeNode> leaves = new ArrayList<>(nodes.size());
+        for (MerkleTreeNode n : nodes) {
+            leaves.add(new PrunedNode(n.getID(), 0));
+        }
+        return new MerkleRoot(MerkleTree.compress(leaves, HashAlgorithm.SHA256).get(0).getID());
+    }
+}
@@ -0,0 +1,88 @@
+/**
+ * Copyright 2016 Digital Asset Holdings, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.merkletree;
+
+import org.hyperledger.common.Hash;
+import org.hyperledger.common.HashAlgorithm;
+import org.hyperledger.common.HashTest;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class MerkleMountainRangeTest {
+
+    @Test
+    public void matchesComputeMerkleRoot() {
+        MerkleMountainRange range = new MerkleMountainRange(HashAlgorithm.SHA256);
+        List<MerkleTreeNode> leaves = new ArrayList<>();
+        for (int n = 1; n <= 100; n++) {
+            Hash leaf = randomHash();
+            leaves.add(new PrunedNode(leaf, 0));
+            range.add(leaf);
+            assertEquals(n, range.size());
+            assertEquals(leaf, range.getLeaf(n - 1));
+            MerkleRoot root = MerkleTree.computeMerkleRoot(leaves, HashAlgorithm.SHA256);
+            assertEquals("leaves " + n, root, range.getRoot());
+            for (int i = 0; i < n; i++) {
+                MerkleProof proof = range.createProof(i);
+                assertEquals(MerkleProof.create(leaves, i), proof);
+                assertTrue(MerkleProof.verify(leaves.get(i).getID(), proof, root));
+            }
+        }
+    }
+
+    @Test
+    public void truncate() {
+        MerkleMountainRange range = new MerkleMountainRange();
+        List<Hash> leaves = new ArrayList<>();
+        for (int i = 0; i < 77; i++) {
+            leaves.add(randomHash());
+            range.add(leaves.get(i));
+        }
+        for (int size : new int[]{76, 64, 33, 1, 0}) {
+            range.truncate(size);
+            MerkleMountainRange fresh = new MerkleMountainRange();
+            for (int i = 0; i < size; i++) {
+                fresh.add(leaves.get(i));
+            }
+            Hash other = randomHash();
+            range.add(other);
+            fresh.add(other);
+            assertEquals("size " + size, fresh.getRoot(), range.getRoot());
+            assertEquals(fresh.createProof(size), range.createProof(size));
+            range.truncate(size);
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void noRootOfNothing() {
+        new MerkleMountainRange().getRoot();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void noTruncateBeyondSize() {
+        MerkleMountainRange range = new MerkleMountainRange();
+        range.add(randomHash());
+        range.truncate(2);
+    }
+
+    private static Hash randomHash() {
+        return new Hash(HashTest.randomBytes(32));
+    }
+}
@@ -0,0 +1,201 @@
+/**
+ * Copyright 2016 Digital Asset Holdings, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.merkletree;
+
+import org.hyperledger.block.Block;
+import org.hyperledger.common.Hash;
+import org.hyperledger.common.HashAlgorithm;
+import org.hyperledger.transaction.TID;
+import org.hyperledger.transaction.Transaction;
+import org.hyperledger.transaction.TransactionTest;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class MerkleMultiProofTest {
+
+    private static final Random random = new Random();
+
+    @Test
+    public void randomSubsets() {
+        List<MerkleTreeNode> leaves = MerkleProofTest.randomLeaves(70);
+        for (int n = 1; n <= leaves.size(); n++) {
+            List<MerkleTreeNode> nodes = leaves.subList(0, n);
+            MerkleRoot root = MerkleTree.computeMerkleRoot(nodes);
+            for (int round = 0; round < 5; round++) {
+                List<Hash> subset = randomSubset(nodes);
+                MerkleMultiProof proof = MerkleMultiProof.create(nodes, subset);
+                assertTrue("leaves " + subset.size() + " of " + n, MerkleMultiProof.verify(subset, proof, root));
+                assertEquals(subset.size(), proof.getLeaves().size());
+            }
+        }
+    }
+
+    @Test
+    public void rejectsOtherLeaves() {
+        List<MerkleTreeNode> leaves = MerkleProofTest.randomLeaves(9);
+        MerkleRoot root = MerkleTree.computeMerkleRoot(leaves);
+        MerkleMultiProof proof = MerkleMultiProof.create(leaves, Arrays.asList(leaves.get(2).getID(), leaves.get(8).getID()));
+        assertTrue(MerkleMultiProof.verify(Collections.singletonList(leaves.get(8).getID()), proof, root));
+        assertFalse(MerkleMultiProof.verify(Collections.singletonList(leaves.get(3).getID()), proof, root));
+        assertFalse(MerkleMultiProof.verify(Collections.singletonList(leaves.get(2).getID()), proof,
+                MerkleTree.computeMerkleRoot(leaves.subList(0, 8))));
+    }
+
+    @Test
+    public void compactKeepsPositions() {
+        // [P0-3(2), P45(1), T6, P7(0)] of a tree of eight leaves
+        List<MerkleTreeNode> leaves = MerkleProofTest.randomLeaves(8);
+        MerkleRoot root = MerkleTree.computeMerkleRoot(leaves);
+        List<MerkleTreeNode> nodes = new ArrayList<>();
+        nodes.add(new PrunedNode(MerkleTree.computeMerkleRoot(leaves.subList(0, 4)), 2));
+        nodes.add(new PrunedNode(MerkleTree.computeMerkleRoot(leaves.subList(4, 6)), 1));
+        nodes.add(TransactionTest.randomTx());
+        nodes.add(leaves.get(7));
+        List<MerkleTreeNode> compressed = MerkleTree.compact(nodes);
+        assertEquals(4, compressed.size());
+
+        nodes.set(2, leaves.get(6));
+        assertEquals(root, MerkleTree.computePrunedMerkleRoot(nodes));
+        List<MerkleTreeNode> all = MerkleTree.compact(nodes);
+        assertEquals(1, all.size());
+        assertEquals(root.toString(), all.get(0).getID().toString());
+    }
+
+    @Test
+    public void compactMatchesRoot() {
+        List<MerkleTreeNode> leaves = MerkleProofTest.randomLeaves(40);
+        for (int n = 1; n <= leaves.size(); n++) {
+            List<MerkleTreeNode> nodes = new ArrayList<>(leaves.subList(0, n));
+            MerkleRoot root = MerkleTree.computeMerkleRoot(nodes);
+            // keep a random leaf unpruned
+            int kept = random.nextInt(n);
+            nodes.set(kept, new Leaf(nodes.get(kept).getID()));
+            List<MerkleTreeNode> compressed = MerkleTree.compact(nodes);
+            assertEquals("leaves " + n, root, MerkleTree.computePrunedMerkleRoot(compressed));
+            assertTrue(compressed.size() <= 2 * (32 - Integer.numberOfLeadingZeros(n)));
+        }
+    }
+
+    @Test
+    public void compactAgreesWithCompress() {
+        List<MerkleTreeNode> leaves = MerkleProofTest.randomLeaves(40);
+        for (int n = 1; n <= leaves.size(); n++) {
+            List<MerkleTreeNode> nodes = new ArrayList<>();
+            for (MerkleTreeNode leaf : leaves.subList(0, n)) {
+                nodes.add(new PrunedNode(leaf.getID(), 0));
+            }
+            List<MerkleTreeNode> compact = MerkleTree.compact(nodes);
+            List<MerkleTreeNode> compressed = MerkleTree.compress(nodes);
+            assertEquals(1, compact.size());
+            assertEquals(1, compressed.size());
+            assertEquals("leaves " + n, compressed.get(0).getID(), compact.get(0).getID());
+            assertEquals(MerkleTree.computeMerkleRoot(leaves.subList(0, n)).toString(), compact.get(0).getID().toString());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsMisalignedNodes() {
+        List<MerkleTreeNode> leaves = MerkleProofTest.randomLeaves(3);
+        MerkleTree.computePrunedMerkleRoot(Arrays.asList(leaves.get(0), new PrunedNode(leaves.get(1).getID(), 1)));
+    }
+
+    @Test
+    public void prunedBlock() {
+        List<Transaction> transactions = new ArrayList<>();
+        for (int i = 0; i < 11; i++) {
+            transactions.add(TransactionTest.randomTx());
+        }
+        Block block = Block.create().transactions(transactions).build();
+        MerkleRoot root = block.getHeader().getMerkleRoot();
+        List<TID> ids = Arrays.asList(transactions.get(1).getID(), transactions.get(2).getID(), transactions.get(10).getID());
+        MerkleMultiProof proof = block.getMerkleMultiProof(ids);
+        assertTrue(MerkleMultiProof.verify(ids, proof, root));
+
+        // a block pruned to some transactions still proves them
+        List<MerkleTreeNode> pruned = new ArrayList<>();
+        for (Transaction t : transactions) {
+            pruned.add(ids.contains(t.getID()) || t == transactions.get(5) ? t : new PrunedNode(t.getID(), 0));
+        }
+        pruned = MerkleTree.compact(pruned);
+        assertEquals(root, MerkleTree.computePrunedMerkleRoot(pruned));
+        MerkleMultiProof fromPruned = MerkleMultiProof.create(pruned, ids);
+        assertTrue(MerkleMultiProof.verify(ids, fromPruned, root));
+        assertEquals(proof, fromPruned);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void noProofOfForeignTransaction() {
+        Block block = Block.create().transactions(TransactionTest.randomTx()).build();
+        block.getMerkleMultiProof(Collections.singletonList(TransactionTest.randomTx().getID()));
+    }
+
+    @Test
+    public void serialization() throws IOException {
+        List<MerkleTreeNode> leaves = MerkleProofTest.randomLeaves(1000);
+        List<Hash> subset = randomSubset(leaves);
+        MerkleMultiProof proof = MerkleMultiProof.create(leaves, subset, HashAlgorithm.SHA512_256);
+        MerkleMultiProof copy = MerkleMultiProof.fromByteArray(proof.toByteArray());
+        assertEquals(proof, copy);
+        assertEquals(HashAlgorithm.SHA512_256, copy.getAlgorithm());
+        assertTrue(MerkleMultiProof.verify(subset, copy, MerkleTree.computeMerkleRoot(leaves, HashAlgorithm.SHA512_256)));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsTruncated() throws IOException {
+        List<MerkleTreeNode> leaves = MerkleProofTest.randomLeaves(10);
+        byte[] data = MerkleMultiProof.create(leaves, Collections.singletonList(leaves.get(4).getID())).toByteArray();
+        MerkleMultiProof.fromByteArray(Arrays.copyOf(data, data.length - 1));
+    }
+
+    private static List<Hash> randomSubset(List<MerkleTreeNode> nodes) {
+        List<Hash> subset = new ArrayList<>();
+        for (MerkleTreeNode node : nodes) {
+            if (random.nextInt(4) == 0) {
+                subset.add(node.getID());
+            }
+        }
+        if (subset.isEmpty()) {
+            subset.add(nodes.get(random.nextInt(nodes.size())).getID());
+        }
+        return subset;
+    }
+
+    private static class Leaf implements MerkleTreeNode {
+        private final Hash id;
+
+        Leaf(Hash id) {
+            this.id = id;
+        }
+
+        @Override
+        public Hash getID() {
+            return id;
+        }
+
+        @Override
+        public int getMerkleHeight() {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/**
+ * Copyright 2016 Digital Asset Holdings, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.merkletree;
+
+import org.hyperledger.block.Block;
+import org.hyperledger.common.Hash;
+import org.hyperledger.common.HashAlgorithm;
+import org.hyperledger.common.HashTest;
+import org.hyperledger.transaction.TID;
+import org.hyperledger.transaction.Transaction;
+import org.hyperledger.transaction.TransactionTest;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class MerkleProofTest {
+
+    @Test
+    public void everyLeafOfEverySize() {
+        List<MerkleTreeNode> leaves = randomLeaves(40);
+        for (int n = 1; n <= leaves.size(); n++) {
+            List<MerkleTreeNode> nodes = leaves.subList(0, n);
+            MerkleRoot root = MerkleTree.computeMerkleRoot(nodes);
+            for (int i = 0; i < n; i++) {
+                MerkleProof proof = MerkleProof.create(nodes, i);
+                assertTrue("leaf " + i + " of " + n, MerkleProof.verify(nodes.get(i).getID(), proof, root));
+                if (n > 1) {
+                    assertFalse(MerkleProof.verify(nodes.get((i + 1) % n).getID(), proof, root));
+                }
+                assertTrue(proof.getSiblings().size() <= 32 - Integer.numberOfLeadingZeros(n));
+            }
+        }
+    }
+
+    @Test
+    public void otherAlgorithm() {
+        List<MerkleTreeNode> leaves = randomLeaves(11);
+        byte[] packed = MerkleEngine.pack(leaves);
+        MerkleRoot root = MerkleTree.computeMerkleRoot(leaves, HashAlgorithm.SKEIN_512_256);
+        MerkleProof proof = MerkleProof.create(packed, 11, 10, HashAlgorithm.SKEIN_512_256);
+        assertTrue(MerkleProof.verify(leaves.get(10).getID(), proof, root));
+    }
+
+    @Test
+    public void blockProof() {
+        List<Transaction> transactions = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            transactions.add(TransactionTest.randomTx());
+        }
+        Block block = Block.create().transactions(transactions).build();
+        TID id = transactions.get(5).getID();
+        MerkleProof proof = block.getMerkleProof(id);
+        assertTrue(MerkleProof.verify(id, proof, block.getHeader().getMerkleRoot()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void noProofOfForeignTransaction() {
+        Block block = Block.create().transactions(TransactionTest.randomTx()).build();
+        block.getMerkleProof(TransactionTest.randomTx().getID());
+    }
+
+    @Test
+    public void serialization() throws IOException {
+        List<MerkleTreeNode> leaves = randomLeaves(1000);
+        MerkleProof proof = MerkleProof.create(leaves, 777);
+        byte[] data = proof.toByteArray();
+        assertEquals(proof, MerkleProof.fromByteArray(data));
+        // format, algorithm, two byte varint count and index, ten siblings
+        assertEquals(1 + 1 + 2 + 2 + 10 * 32, data.length);
+
+        MerkleProof single = MerkleProof.create(leaves.subList(0, 1), 0);
+        assertEquals(single, MerkleProof.fromByteArray(single.toByteArray()));
+        assertTrue(MerkleProof.verify(leaves.get(0).getID(), single, new MerkleRoot(leaves.get(0).getID())));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsTruncated() throws IOException {
+        byte[] data = MerkleProof.create(randomLeaves(10), 3).toByteArray();
+        MerkleProof.fromByteArray(Arrays.copyOf(data, data.length - 1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsWrongSiblingCount() {
+        new MerkleProof(0, 4, new ArrayList<Hash>(), HashAlgorithm.SHA256);
+    }
+
+    public static List<MerkleTreeNode> randomLeaves(int n) {
+        List<MerkleTreeNode> leaves = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            leaves.add(new PrunedNode(new Hash(HashTest.randomBytes(32)), 0));
+        }
+        return leaves;
+    }
+}
@@ -0,0 +1,412 @@
+/**
+ * Copyright 2016 Digital Asset Holdings, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.transaction;
+
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.EncoderFactory;
+import org.hyperledger.common.AvroSerializer;
+import org.hyperledger.common.HashTest;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+
+import static org.junit.Assert.*;
+
+/**
+ * The codec against the classes generated by Avro, on random content
+ */
+public class TransactionCodecTest {
+
+    private static final Random random = new Random();
+    private static final int[] LENGTHS = {0, 1, 31, 63, 64, 127, 128, 8191, 8192};
+
+    @Test
+    public void encodesAsAvro() throws IOException {
+        for (int i = 0; i < 500; i++) {
+            Transaction t = randomContent();
+            SerializedTransaction record = toRecord(t);
+            byte[] avro = AvroSerializer.serialize(record);
+            byte[] encoded = TransactionCodec.encode(t.getInputs(), t.getOutputs(), t.getEndorsers());
+            assertArrayEquals(avro, encoded);
+
+            assertTrue(wraps(avro));
+            TransactionCodec.Decoded decoded = TransactionCodec.decode(avro, null);
+            assertSameContent(t, decoded);
+        }
+    }
+
+    @Test
+    public void encodesV2AsAvro() throws IOException {
+        for (int i = 0; i < 500; i++) {
+            Transaction t = randomContent(Transaction.VERSION_2);
+            SerializedTransactionV2 record = toRecordV2(t);
+            byte[] encoded = t.toByteArray();
+            assertEquals(TransactionCodec.V2_TAG, encoded[0]);
+            assertArrayEquals(AvroSerializer.serialize(record), Arrays.copyOfRange(encoded, 1, encoded.length));
+            assertEquals(t.getInputs().size(), toRecord(t).getInputs().size());
+            assertEquals(AvroSerializer.serialize(toRecord(t)).length - t.getInputs().size(), encoded.length - 1);
+
+            TransactionCodec.Decoded decoded = TransactionCodec.decode(encoded, null);
+            assertEquals(Transaction.VERSION_2, decoded.version);
+            assertSameContent(t, decoded);
+
+            TransactionView view = TransactionView.wrap(encoded);
+            assertEquals(Transaction.VERSION_2, view.getVersion());
+            assertEquals(t.getInputs(), view.getInputs());
+            assertEquals(t.getID(), view.getID());
+        }
+    }
+
+    @Test
+    public void decodesBlockedArrays() throws IOException {
+        for (int version : new int[]{Transaction.VERSION_1, Transaction.VERSION_2}) {
+            for (int i = 0; i < 500; i++) {
+                Transaction t = randomContent(version);
+                byte[] blocked = blocked(t);
+                // what Avro reads is the reference
+                if (version == Transaction.VERSION_1) {
+                    assertEquals(toRecord(t), AvroSerializer.deserialize(ByteBuffer.wrap(blocked), SerializedTransaction.getClassSchema()));
+                } else {
+                    assertEquals(toRecordV2(t), AvroSerializer.deserialize(ByteBuffer.wrap(Arrays.copyOfRange(blocked, 1, blocked.length)),
+                            SerializedTransactionV2.getClassSchema()));
+                }
+
+                TransactionCodec.Decoded decoded = TransactionCodec.decode(blocked, null);
+                assertSameContent(t, decoded);
+                assertEquals(version, decoded.version);
+                assertEquals(Arrays.equals(t.toByteArray(), blocked), wraps(blocked));
+
+                Transaction read = Transaction.fromByteArray(blocked);
+                assertEquals(t, read);
+                assertArrayEquals(t.toByteArray(), read.toByteArray());
+            }
+        }
+    }
+
+    @Test
+    public void rejectsWhatAvroRejects() throws IOException {
+        for (int i = 0; i < 200; i++) {
+            byte[] data = blocked(randomContent(Transaction.VERSION_1));
+            byte[] truncated = Arrays.copyOf(data, random.nextInt(data.length));
+            assertFalse(avroReads(truncated));
+            try {
+                TransactionCodec.decode(truncated, null);
+                fail();
+            } catch (IOException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void rejectsOverlongVarint() throws IOException {
+        // the empty transaction 00 00 00 with a first count of ten bytes, its bits beyond 64 set
+        byte[] overlong = {(byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80,
+                (byte) 0x80, (byte) 0x80, 0x02, 0x00, 0x00};
+        try {
+            TransactionCodec.decode(overlong, null);
+            fail();
+        } catch (IOException e) {
+            // expected
+        }
+        try {
+            Transaction.fromByteArray(overlong);
+            fail();
+        } catch (IOException e) {
+            // expected
+        }
+        // padded, but without bits beyond 64
+        overlong[9] = 0x00;
+        assertTrue(TransactionCodec.decode(overlong, null).inputs.isEmpty());
+        assertFalse(wraps(overlong));
+    }
+
+    @Test
+    public void rejectsNegativeFirstBlockOfVersion1() throws IOException {
+        List<TID> inputs = Arrays.asList(new TID(HashTest.randomBytes(32)), new TID(HashTest.randomBytes(32)), new TID(HashTest.randomBytes(32)),
+                new TID(HashTest.randomBytes(32)));
+        for (int count : new int[]{1, 2, 4}) {
+            // the inputs in a first block of -count items and further blocks of one, then empty outputs and endorsers
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            BinaryEncoder encoder = EncoderFactory.get().directBinaryEncoder(out, null);
+            encoder.writeLong(-count);
+            // size of the block, a length byte and a digest per input
+            encoder.writeLong(count * 33);
+            for (int i = 0; i < inputs.size(); i++) {
+                if (i >= count) {
+                    encoder.writeLong(1);
+                }
+                encoder.writeBytes(inputs.get(i).toByteArray());
+            }
+            encoder.writeLong(0);
+            encoder.writeLong(0);
+            encoder.writeLong(0);
+            encoder.flush();
+            byte[] data = out.toByteArray();
+            SerializedTransaction record = AvroSerializer.deserialize(ByteBuffer.wrap(data), SerializedTransaction.getClassSchema());
+            assertEquals(inputs.size(), record.getInputs().size());
+            try {
+                TransactionCodec.Decoded decoded = TransactionCodec.decode(data, null);
+                // -2 and -4 start with a version 2 tag, so it may only be read as something else
+                assertEquals(Transaction.VERSION_2, decoded.version);
+                assertNotEquals(inputs, decoded.inputs);
+            } catch (IOException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void compressesOutputs() throws IOException {
+        byte[] document = document(4000);
+        byte[] noise = HashTest.randomBytes(3000);
+        byte[] small = "{\"a\":1}".getBytes(StandardCharsets.UTF_8);
+        Transaction t = new TransactionBuilder()
+                .input(new TID(HashTest.randomBytes(32)))
+                .output(document).output(noise).output(small).output(new byte[0])
+                .compressOutputs(256)
+                .build();
+        assertTrue(t.hasCompressedOutputs());
+        assertEquals(Transaction.VERSION_2, t.getVersion());
+        byte[] encoded = t.toByteArray();
+        assertEquals(TransactionCodec.V2_PACKED_TAG, encoded[0]);
+        assertTrue(encoded.length < document.length / 2 + noise.length + small.length + 200);
+        // deterministic
+        assertEquals(t.getID(), new TransactionBuilder().inputs(t.getInputs()).outputs(t.getOutputs()).compressOutputs(256).build().getID());
+
+        TransactionCodec.Decoded decoded = TransactionCodec.decode(encoded, null);
+        assertEquals(TransactionCodec.DEFLATED, decoded.outputs.get(0)[0]);
+        assertEquals(TransactionCodec.STORED, decoded.outputs.get(1)[0]);
+        assertEquals(TransactionCodec.STORED, decoded.outputs.get(2)[0]);
+
+        for (Transaction read : Arrays.asList(Transaction.fromByteArray(encoded),
+                Transaction.wrapByteArrays(Arrays.asList(encoded), null).get(0))) {
+            assertEquals(t, read);
+            assertTrue(read.hasCompressedOutputs());
+            assertArrayEquals(document, read.getOutputs().get(0));
+            assertArrayEquals(noise, read.getOutputs().get(1));
+            assertArrayEquals(small, read.getOutputs().get(2));
+            assertEquals(0, read.getOutputs().get(3).length);
+            assertArrayEquals(encoded, read.toByteArray());
+        }
+        TransactionView view = TransactionView.wrap(encoded);
+        assertEquals(ByteBuffer.wrap(document), view.getOutput(0));
+        assertEquals(ByteBuffer.wrap(small), view.getOutput(2));
+        assertArrayEquals(document, view.getOutputs().get(0));
+
+        // a longer encoding is read with the compressed outputs as they are
+        byte[] padded = new byte[encoded.length + 1];
+        padded[0] = encoded[0];
+        padded[1] = (byte) 0x82;
+        System.arraycopy(encoded, 2, padded, 3, encoded.length - 2);
+        assertArrayEquals(encoded, Transaction.fromByteArray(padded).toByteArray());
+    }
+
+    @Test
+    public void rejectsCorruptCompressedOutputs() throws IOException {
+        byte[] encoded = new TransactionBuilder().output(document(4000)).compressOutputs(0).build().toByteArray();
+        byte[] packed = TransactionCodec.decode(encoded, null).outputs.get(0);
+        // the output is followed by the ends of two arrays
+        int output = encoded.length - 2 - packed.length;
+        // the stream is checked when the output is read, a raw deflate stream has no checksum, so the first block
+        // gets the reserved type
+        byte[] corrupt = encoded.clone();
+        corrupt[output + TransactionCodec.checkPacked(packed, 0, packed.length)[0]] |= 0x06;
+        Transaction t = Transaction.fromByteArray(corrupt);
+        try {
+            t.getOutputs();
+            fail();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        // an unknown flag when decoded
+        byte[] flag = encoded.clone();
+        flag[output] = 2;
+        try {
+            Transaction.fromByteArray(flag);
+            fail();
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void limitsExpandedLengthOfTransaction() throws IOException {
+        // deflated outputs that claim to expand to 3/4 of the limit each, the streams are not read when decoded
+        int length = TransactionCodec.MAX_EXPANDED_LENGTH / 4 * 3;
+        byte[] header = TransactionCodec.pack(new byte[length], 0);
+        byte[] claim = Arrays.copyOf(header, TransactionCodec.checkPacked(header, 0, header.length)[0] + 1);
+        List<TID> inputs = Arrays.asList(new TID(HashTest.randomBytes(32)));
+        List<Endorser> endorsers = Collections.emptyList();
+        byte[] one = TransactionCodec.encode(Transaction.VERSION_2, true, inputs, Arrays.asList(claim), endorsers);
+        byte[] two = TransactionCodec.encode(Transaction.VERSION_2, true, inputs, Arrays.asList(claim, claim), endorsers);
+        TransactionCodec.decode(one, null);
+        TransactionView.wrap(ByteBuffer.wrap(one));
+        try {
+            TransactionCodec.decode(two, null);
+            fail();
+        } catch (IOException e) {
+            // expected
+        }
+        try {
+            TransactionView.wrap(ByteBuffer.wrap(two));
+            fail();
+        } catch (IOException e) {
+            // expected
+        }
+        // a transaction built from such outputs deflates the first and stores the second
+        List<byte[]> packed = TransactionCodec.pack(Arrays.asList(new byte[length], new byte[length]), 0);
+        assertEquals(TransactionCodec.DEFLATED, packed.get(0)[0]);
+        assertEquals(TransactionCodec.STORED, packed.get(1)[0]);
+    }
+
+    // JSON of a given length, compressible as real documents are
+    private static byte[] document(int length) {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; json.length() < length - 100; i++) {
+            json.append(String.format("{\"id\":%d,\"owner\":\"user%d\",\"amount\":%d,\"currency\":\"USD\"},",
+                    i, random.nextInt(100), random.nextInt(100000)));
+        }
+        json.setLength(json.length() - 1);
+        return json.append("]").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void assertSameContent(Transaction t, TransactionCodec.Decoded decoded) {
+        assertEquals(t.getInputs(), decoded.inputs);
+        assertEquals(t.getOutputs().size(), decoded.outputs.size());
+        for (int i = 0; i < t.getOutputs().size(); i++) {
+            assertArrayEquals(t.getOutputs().get(i), decoded.outputs.get(i));
+        }
+        assertEquals(t.getEndorsers().size(), decoded.endorsers.size());
+        for (int i = 0; i < t.getEndorsers().size(); i++) {
+            assertArrayEquals(t.getEndorsers().get(i).getSignature(), decoded.endorsers.get(i).getSignature());
+        }
+    }
+
+    // true if data is the canonical encoding
+    private static boolean wraps(byte[] data) {
+        try {
+            TransactionView.wrap(data);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static boolean avroReads(byte[] data) {
+        try {
+            AvroSerializer.deserialize(ByteBuffer.wrap(data), SerializedTransaction.getClassSchema());
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    // Avro encoding of t in its version with each array split into random blocks, some with a negative count and
+    // their size, except the first block of version 1
+    private static byte[] blocked(Transaction t) throws IOException {
+        boolean v2 = t.getVersion() == Transaction.VERSION_2;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        if (v2) {
+            out.write(TransactionCodec.V2_TAG);
+        }
+        BinaryEncoder encoder = EncoderFactory.get().directBinaryEncoder(out, null);
+        SerializedTransaction record = toRecord(t);
+        for (List<ByteBuffer> items : Arrays.asList(record.getInputs(), record.getOutputs(), record.getEndorsers())) {
+            boolean fixed = v2 && items == record.getInputs();
+            int i = 0;
+            while (i < items.size()) {
+                int count = 1 + random.nextInt(items.size() - i);
+                ByteArrayOutputStream block = new ByteArrayOutputStream();
+                BinaryEncoder blockEncoder = EncoderFactory.get().directBinaryEncoder(block, null);
+                for (int j = 0; j < count; j++) {
+                    if (fixed) {
+                        blockEncoder.writeFixed(items.get(i + j).duplicate());
+                    } else {
+                        blockEncoder.writeBytes(items.get(i + j).duplicate());
+                    }
+                }
+                // a version 1 encoding may not start with a negative block count
+                boolean first = !v2 && out.size() == 0;
+                if (first || random.nextBoolean()) {
+                    encoder.writeLong(count);
+                } else {
+                    encoder.writeLong(-count);
+                    encoder.writeLong(block.size());
+                }
+                encoder.writeFixed(block.toByteArray());
+                i += count;
+            }
+            encoder.writeLong(0);
+        }
+        encoder.flush();
+        return out.toByteArray();
+    }
+
+    private static SerializedTransaction toRecord(Transaction t) {
+        return SerializedTransaction.newBuilder()
+                .setInputs(AvroSerializer.toByteBufferList(t.getInputs(), TID::toByteArray))
+                .setOutputs(AvroSerializer.toByteBufferList(t.getOutputs(), Function.identity()))
+                .setEndorsers(AvroSerializer.toByteBufferList(t.getEndorsers(), Endorser::getSignature))
+                .build();
+    }
+
+    private static SerializedTransactionV2 toRecordV2(Transaction t) {
+        List<Digest> inputs = new ArrayList<>();
+        for (TID input : t.getInputs()) {
+            inputs.add(new Digest(input.toByteArray()));
+        }
+        return SerializedTransactionV2.newBuilder()
+                .setInputs(inputs)
+                .setOutputs(AvroSerializer.toByteBufferList(t.getOutputs(), Function.identity()))
+                .setEndorsers(AvroSerializer.toByteBufferList(t.getEndorsers(), Endorser::getSignature))
+                .build();
+    }
+
+    private static Transaction randomContent() {
+        return randomContent(Transaction.VERSION_1);
+    }
+
+    // counts and lengths around the varint boundaries
+    private static Transaction randomContent(int version) {
+        List<TID> inputs = new ArrayList<>();
+        for (int i = randomCount(); i > 0; i--) {
+            inputs.add(new TID(HashTest.randomBytes(32)));
+        }
+        List<byte[]> outputs = new ArrayList<>();
+        for (int i = randomCount(); i > 0; i--) {
+            outputs.add(HashTest.randomBytes(random.nextInt(4) == 0 ? random.nextInt(20000) : LENGTHS[random.nextInt(LENGTHS.length)]));
+        }
+        List<Endorser> endorsers = new ArrayList<>();
+        for (int i = randomCount(); i > 0; i--) {
+            endorsers.add(new Endorser(HashTest.randomBytes(random.nextInt(100))));
+        }
+        return new Transaction(inputs, outputs, endorsers, version);
+    }
+
+    private static int randomCount() {
+        return random.nextInt(10) == 0 ? 60 + random.nextInt(10) : random.nextInt(4);
+    }
+}
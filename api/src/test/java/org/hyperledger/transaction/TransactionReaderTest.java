@@ -0,0 +1,142 @@
+/**
+ * Copyright 2016 Digital Asset Holdings, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.transaction;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TransactionReaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void streamAndMap() throws IOException {
+        List<Transaction> transactions = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            transactions.add(TransactionTest.randomTx());
+        }
+        // larger than the buffers
+        transactions.add(new TransactionBuilder().output(new byte[200000]).build());
+        transactions.add(new TransactionBuilder().build());
+
+        for (boolean checksums : new boolean[]{false, true}) {
+            Path path = folder.newFile().toPath();
+            try (TransactionWriter writer = TransactionWriter.create(path, checksums)) {
+                for (Transaction t : transactions) {
+                    writer.write(t);
+                }
+            }
+
+            try (TransactionReader reader = new TransactionReader(Files.newByteChannel(path))) {
+                for (Transaction t : transactions) {
+                    Transaction read = reader.next();
+                    assertEquals(t, read);
+                    assertArrayEquals(t.toByteArray(), read.toByteArray());
+                }
+                assertNull(reader.next());
+            }
+
+            try (TransactionReader reader = TransactionReader.map(path)) {
+                for (Transaction t : transactions) {
+                    TransactionView view = reader.nextView();
+                    assertEquals(t.getID(), view.getID());
+                    assertEquals(t.getOutputs().size(), view.getOutputCount());
+                }
+                assertNull(reader.nextView());
+            }
+
+            try (TransactionReader reader = TransactionReader.map(path)) {
+                assertEquals(transactions.subList(0, 100), reader.readBatch(100, null));
+                assertEquals(transactions.subList(100, transactions.size()), reader.readBatch(1000, null));
+                assertEquals(Collections.emptyList(), reader.readBatch(1000, null));
+            }
+        }
+    }
+
+    @Test
+    public void detectsCorruption() throws IOException {
+        byte[] file = write(true, TransactionTest.randomTx(), TransactionTest.randomTx());
+        file[file.length - 10] ^= 1;
+        try {
+            read(file);
+            fail();
+        } catch (IOException e) {
+            assertEquals("Frame checksum mismatch", e.getMessage());
+        }
+    }
+
+    @Test
+    public void rejectsTruncated() throws IOException {
+        Transaction first = TransactionTest.randomTx();
+        byte[] file = write(false, first, TransactionTest.randomTx());
+        assertEquals(2, read(file).size());
+        int between = TransactionWriter.HEADER_SIZE + 4 + first.getSerializedSize();
+        assertEquals(1, read(Arrays.copyOf(file, between)).size());
+        for (int length = TransactionWriter.HEADER_SIZE + 1; length < file.length; length += 7) {
+            if (length == between) {
+                continue;
+            }
+            try {
+                read(Arrays.copyOf(file, length));
+                fail();
+            } catch (IOException e) {
+                assertEquals("Truncated frame", e.getMessage());
+            }
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsUnknownHeader() throws IOException {
+        byte[] file = write(false, TransactionTest.randomTx());
+        file[4] = 2;
+        read(file);
+    }
+
+    private static byte[] write(boolean checksums, Transaction... transactions) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (TransactionWriter writer = new TransactionWriter(Channels.newChannel(out), checksums)) {
+            for (Transaction t : transactions) {
+                writer.write(t);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static List<Transaction> read(byte[] file) throws IOException {
+        List<Transaction> result = new ArrayList<>();
+        try (TransactionReader reader = new TransactionReader(Channels.newChannel(new ByteArrayInputStream(file)))) {
+            for (Transaction t; (t = reader.next()) != null; ) {
+                result.add(t);
+            }
+        }
+        return result;
+    }
+}
@@ -18,17 +18,30 @@ package org.hyperledger.transaction;
 
 import org.hyperledger.common.BouncyCastleCrypto;
 import org.hyperledger.common.Cryptography;
+import org.hyperledger.common.HashTest;
 import org.hyperledger.common.PrivateKey;
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.util.Random;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.function.Supplier;
 
 import static org.junit.Assert.*;
 
 public class TransactionTest {
 
-    private static final Random random = new Random();
     private static final Cryptography crypto = new BouncyCastleCrypto();
 
     @Test
@@ -40,26 +53,238 @@ public class TransactionTest {
         assertEquals(original, result);
     }
 
+    @Test
+    public void keepsCanonicalBytes() throws IOException {
+        Transaction original = randomTx();
+        byte[] serialized = original.toByteArray();
+        assertArrayEquals(Transaction.toByteArray(original.getInputs(), original.getOutputs(), original.getEndorsers()), serialized);
+        assertEquals(serialized.length, original.getSerializedSize());
+        serialized[0]++;
+        assertNotEquals(serialized[0], original.toByteArray()[0]);
+        assertEquals(original.getID(), Transaction.fromByteArrays(Collections.singletonList(original.toByteArray())).get(0).getID());
+    }
+
+    @Test
+    public void writesWhatToByteArrayReturns() throws IOException {
+        Transaction overridden = new Transaction(new ArrayList<>(), new ArrayList<>(), new ArrayList<>()) {
+            @Override
+            public byte[] toByteArray() {
+                return new byte[]{1, 2, 3, 4};
+            }
+        };
+        assertEquals(4, overridden.getSerializedSize());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        overridden.writeTo(out);
+        assertArrayEquals(new byte[]{1, 2, 3, 4}, out.toByteArray());
+    }
+
+    @Test
+    public void longerEncodingHasCanonicalID() throws IOException {
+        Transaction original = randomTx();
+        byte[] canonical = original.toByteArray();
+        // the input count 1 as a padded two byte varint
+        assertEquals(2, canonical[0]);
+        byte[] padded = new byte[canonical.length + 1];
+        padded[0] = (byte) 0x82;
+        System.arraycopy(canonical, 1, padded, 2, canonical.length - 1);
+
+        Transaction result = Transaction.fromByteArray(padded);
+        assertEquals(original.getID(), result.getID());
+        assertArrayEquals(canonical, result.toByteArray());
+        assertEquals(original.getID(), Transaction.fromByteArrays(Collections.singletonList(padded)).get(0).getID());
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsTrailingBytes() throws IOException {
+        byte[] serialized = randomTx().toByteArray();
+        Transaction.fromByteArray(Arrays.copyOf(serialized, serialized.length + 1));
+    }
+
+    @Test
+    public void bufferOutputs() throws IOException {
+        byte[] output = HashTest.randomBytes(1000);
+        Path file = Files.createTempFile("output", null);
+        try {
+            Files.write(file, output);
+            ByteBuffer mapped;
+            try (FileChannel channel = FileChannel.open(file)) {
+                mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, output.length);
+            }
+            ByteBuffer direct = ByteBuffer.allocateDirect(output.length + 10);
+            direct.position(10);
+            direct.duplicate().put(output);
+            ByteBuffer slice = ByteBuffer.wrap(Arrays.copyOf(output, output.length + 1), 0, output.length);
+            for (int version : new int[]{Transaction.VERSION_1, Transaction.VERSION_2}) {
+                Transaction expected = new TransactionBuilder().output(output).output(new byte[2]).version(version).build();
+                for (ByteBuffer buffer : Arrays.asList(mapped, direct, slice)) {
+                    int position = buffer.position();
+                    Transaction t = new TransactionBuilder().output(buffer).output(new byte[2]).version(version).build();
+                    assertEquals(position, buffer.position());
+                    assertEquals(expected, t);
+                    assertArrayEquals(expected.toByteArray(), t.toByteArray());
+                    assertArrayEquals(output, t.getOutputs().get(0));
+                    assertSame(t, t.compact());
+                }
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void compactContent() throws IOException {
+        Transaction t = new TransactionBuilder()
+                .input(new TID(HashTest.randomBytes(32))).input(new TID(HashTest.randomBytes(32)))
+                .output(HashTest.randomBytes(100)).output(new byte[0])
+                .endorsers(randomTx().getEndorsers())
+                .version(Transaction.VERSION_2)
+                .build();
+        for (Transaction compact : Arrays.asList(t.compact(), Transaction.fromByteArray(t.toByteArray()))) {
+            assertEquals(t, compact);
+            assertSame(compact, compact.compact());
+            assertEquals(t.getInputs(), compact.getInputs());
+            assertEquals(t.getOutputs().size(), compact.getOutputs().size());
+            assertArrayEquals(t.getOutputs().get(0), compact.getOutputs().get(0));
+            assertArrayEquals(t.getEndorsers().get(0).getSignature(), compact.getEndorsers().get(0).getSignature());
+            assertTrue(compact.getRetainedSize() < t.getRetainedSize());
+        }
+    }
+
+    @Test
+    public void deserializedContentIsKeptAndReadOnly() throws IOException {
+        Transaction t = Transaction.fromByteArray(randomTx().toByteArray());
+        assertSame(t.getInputs().get(0), t.getInputs().get(0));
+        assertSame(t.getOutputs().get(0), t.getOutputs().get(0));
+        assertSame(t.getEndorsers().get(0), t.getEndorsers().get(0));
+        try {
+            t.getOutputs().set(0, new byte[1]);
+            fail();
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        try {
+            t.getInputs().add(new TID(HashTest.randomBytes(32)));
+            fail();
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void buildAll() {
+        List<PrivateKey> keys = Arrays.asList(PrivateKey.createNew(crypto), PrivateKey.createNew(crypto));
+        for (int count : new int[]{0, 1, TransactionBuilder.PARALLEL_THRESHOLD + 1}) {
+            List<byte[]> outputs = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                outputs.add(HashTest.randomBytes(100));
+            }
+            List<Transaction> built = TransactionBuilder.buildAll(builders(outputs, keys), new ForkJoinPool(4));
+            assertEquals(count, built.size());
+            for (int i = 0; i < count; i++) {
+                Transaction t = built.get(i);
+                assertEquals(builders(outputs.subList(i, i + 1), keys).get(0).build(), t);
+                assertTrue(t.verify(t.getEndorsers().get(1), keys.get(1).getPublic()));
+            }
+        }
+    }
+
+    @Test
+    public void buildAllInPool() {
+        Thread caller = Thread.currentThread();
+        ForkJoinPool single = new ForkJoinPool(1);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        for (int count : new int[]{1, TransactionBuilder.PARALLEL_THRESHOLD - 1, TransactionBuilder.PARALLEL_THRESHOLD}) {
+            // built on the calling thread below the threshold or without parallelism, never in another pool
+            Set<Thread> threads = ConcurrentHashMap.newKeySet();
+            TransactionBuilder.buildAll(recording(count, threads), single);
+            assertEquals(Collections.singleton(caller), threads);
+
+            threads.clear();
+            TransactionBuilder.buildAll(recording(count, threads), pool);
+            for (Thread thread : threads) {
+                if (count < TransactionBuilder.PARALLEL_THRESHOLD) {
+                    assertSame(caller, thread);
+                } else {
+                    assertTrue(thread == caller || ((ForkJoinWorkerThread) thread).getPool() == pool);
+                }
+            }
+        }
+        single.shutdown();
+        pool.shutdown();
+    }
+
+    @Test
+    public void templates() {
+        PrivateKey key = PrivateKey.createNew(crypto);
+        List<TID> inputs = Arrays.asList(new TID(HashTest.randomBytes(32)), new TID(HashTest.randomBytes(32)));
+        Endorser endorser = new Endorser(HashTest.randomBytes(72));
+        List<Supplier<TransactionBuilder>> layouts = Arrays.asList(
+                TransactionBuilder::new,
+                () -> new TransactionBuilder().inputs(inputs),
+                () -> new TransactionBuilder().inputs(inputs).endorse(key),
+                () -> new TransactionBuilder().inputs(inputs).endorsers(Collections.singletonList(endorser)).endorse(key)
+                        .version(Transaction.VERSION_2),
+                () -> new TransactionBuilder().inputs(inputs).endorse(key).compressOutputs(10));
+        for (Supplier<TransactionBuilder> layout : layouts) {
+            TransactionTemplate template = layout.get().template();
+            for (List<byte[]> outputs : Arrays.asList(Collections.singletonList(HashTest.randomBytes(100)),
+                    Arrays.asList(new byte[1000], HashTest.randomBytes(20), new byte[0]))) {
+                Transaction expected = layout.get().outputs(outputs).build();
+                Transaction t = template.build(outputs);
+                assertEquals(expected, t);
+                assertArrayEquals(expected.toByteArray(), t.toByteArray());
+                assertEquals(expected.getVersion(), template.getVersion());
+                assertEquals(expected.getInputs(), t.getInputs());
+                assertSame(outputs.get(0), t.getOutputs().get(0));
+                assertEquals(expected.getEndorsers().size(), t.getEndorsers().size());
+            }
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void templateHasNoOutputs() {
+        new TransactionBuilder().output(new byte[1]).template();
+    }
+
+    private static List<TransactionBuilder> builders(List<byte[]> outputs, List<PrivateKey> keys) {
+        List<TransactionBuilder> builders = new ArrayList<>();
+        for (byte[] output : outputs) {
+            TransactionBuilder builder = new TransactionBuilder().output(output);
+            keys.forEach(builder::endorse);
+            builders.add(builder);
+        }
+        return builders;
+    }
+
+    // builders that add the thread they are built on to threads
+    private static List<TransactionBuilder> recording(int count, Set<Thread> threads) {
+        List<TransactionBuilder> builders = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            builders.add(new TransactionBuilder() {
+                @Override
+                public Transaction build() {
+                    threads.add(Thread.currentThread());
+                    return super.build();
+                }
+            }.output(HashTest.randomBytes(10)));
+        }
+        return builders;
+    }
+
     public static Transaction randomTx() {
         return new TransactionBuilder()
-                .input(new TID(randomBytes(32)))
-                .output(randomBytes(100))
+                .input(new TID(HashTest.randomBytes(32)))
+                .output(HashTest.randomBytes(100))
                 .endorse(PrivateKey.createNew(crypto))
                 .build();
     }
 
-    private static byte[] randomBytes(int length) {
-        byte[] payload = new byte[length];
-        random.nextBytes(payload);
-        return payload;
-    }
-
     @Test
     public void signatureValidationSucceeds() {
         PrivateKey key = PrivateKey.createNew(crypto);
 
         Transaction t = new TransactionBuilder()
-                .output(randomBytes(100))
+                .output(HashTest.randomBytes(100))
                 .endorse(key)
                 .build();
 
@@ -72,7 +297,7 @@ public class TransactionTest {
         PrivateKey key2 = PrivateKey.createNew(crypto);
 
         Transaction t = new TransactionBuilder()
-                .output(randomBytes(100))
+                .output(HashTest.randomBytes(100))
                 .endorse(key1)
                 .build();
 
@@ -0,0 +1,137 @@
+/**
+ * Copyright 2016 Digital Asset Holdings, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hyperledger.transaction;
+
+import org.hyperledger.common.AvroSerializer;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TransactionViewTest {
+
+    @Test
+    public void matchesTransaction() throws IOException {
+        Transaction t = new TransactionBuilder()
+                .input(TransactionTest.randomTx().getID())
+                .input(TransactionTest.randomTx().getID())
+                .outputs(TransactionTest.randomTx().getOutputs())
+                .output(new byte[0])
+                .endorsers(TransactionTest.randomTx().getEndorsers())
+                .build();
+        byte[] bytes = t.toByteArray();
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length + 10);
+        direct.position(5);
+        direct.put(bytes).flip().position(5);
+        ByteBuffer heap = ByteBuffer.allocate(bytes.length + 3);
+        heap.position(3);
+        heap.put(bytes).flip().position(3);
+
+        for (TransactionView view : new TransactionView[]{TransactionView.wrap(bytes), TransactionView.wrap(direct), TransactionView.wrap(heap)}) {
+            assertEquals(t.getID(), view.getID());
+            assertEquals(bytes.length, view.size());
+            assertEquals(t.getInputs(), view.getInputs());
+            assertEquals(2, view.getOutputCount());
+            assertEquals(ByteBuffer.wrap(t.getOutputs().get(0)), view.getOutput(0));
+            assertEquals(0, view.getOutput(1).remaining());
+            assertArrayEquals(t.getEndorsers().get(0).getSignature(), view.getEndorsers().get(0).getSignature());
+        }
+        assertEquals(5, direct.position());
+        assertEquals(t.getID(), t.getView().getID());
+    }
+
+    @Test(expected = ReadOnlyBufferException.class)
+    public void slicesAreReadOnly() throws IOException {
+        TransactionView.wrap(TransactionTest.randomTx().toByteArray()).getOutput(0).put((byte) 0);
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsLongerEncoding() throws IOException {
+        byte[] canonical = TransactionTest.randomTx().toByteArray();
+        byte[] padded = new byte[canonical.length + 1];
+        padded[0] = (byte) 0x82;
+        System.arraycopy(canonical, 1, padded, 2, canonical.length - 1);
+        TransactionView.wrap(padded);
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsOverlongVarint() throws IOException {
+        // the empty transaction 00 00 00 with a first count of ten bytes, its bits beyond 64 set
+        byte[] overlong = {(byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80,
+                (byte) 0x80, (byte) 0x80, 0x02, 0x00, 0x00};
+        TransactionView.wrap(overlong);
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsTruncated() throws IOException {
+        byte[] bytes = TransactionTest.randomTx().toByteArray();
+        TransactionView.wrap(Arrays.copyOf(bytes, bytes.length - 1));
+    }
+
+    @Test
+    public void wrapByteArrays() throws IOException {
+        List<Transaction> transactions = new ArrayList<>();
+        List<byte[]> arrays = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Transaction t = TransactionTest.randomTx();
+            transactions.add(t);
+            arrays.add(t.toByteArray());
+        }
+        // an encoding Avro accepts but the view does not
+        byte[] canonical = arrays.get(3);
+        byte[] padded = new byte[canonical.length + 1];
+        padded[0] = (byte) 0x82;
+        System.arraycopy(canonical, 1, padded, 2, canonical.length - 1);
+        arrays.set(3, padded);
+
+        List<Transaction> wrapped = Transaction.wrapByteArrays(arrays, null);
+        assertEquals(transactions, wrapped);
+        long undecoded = wrapped.get(0).getRetainedSize();
+        for (int i = 0; i < transactions.size(); i++) {
+            Transaction t = transactions.get(i), w = wrapped.get(i);
+            assertEquals(t.getInputs(), w.getInputs());
+            assertArrayEquals(t.getOutputs().get(0), w.getOutputs().get(0));
+            assertArrayEquals(t.toByteArray(), w.toByteArray());
+        }
+        assertTrue(undecoded < wrapped.get(0).getRetainedSize());
+    }
+
+    @Test
+    public void fromByteBufferListOfSlices() {
+        ByteBuffer buffer = ByteBuffer.wrap(new byte[]{1, 2, 3, 4, 5});
+        buffer.position(1);
+        ByteBuffer slice = buffer.slice();
+        slice.limit(2);
+        ByteBuffer direct = ByteBuffer.allocateDirect(3);
+        direct.put(new byte[]{6, 7, 8}).flip();
+        List<byte[]> arrays = AvroSerializer.fromByteBufferList(Arrays.asList(slice, direct), b -> b);
+        assertArrayEquals(new byte[]{2, 3}, arrays.get(0));
+        assertArrayEquals(new byte[]{6, 7, 8}, arrays.get(1));
+        assertEquals(0, slice.position());
+    }
+
+    @Test
+    public void wrapNoTransactions() throws IOException {
+        assertEquals(Collections.emptyList(), Transaction.wrapByteArrays(Collections.emptyList(), null));
+    }
+}